@@ -1,14 +1,23 @@
 package damose.app;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import damose.config.AppConstants;
 import damose.controller.MainController;
+import damose.data.loader.GtfsSource;
 import damose.database.DatabaseManager;
 import damose.database.SessionManager;
 import damose.model.ConnectionMode;
 import damose.service.RealtimeService;
+import damose.service.StaticData;
+import damose.service.StaticDataBootstrap;
+import damose.service.StaticDataManager;
 import damose.ui.dialog.LoadingDialog;
 import damose.ui.dialog.LoginDialog;
 
@@ -58,75 +67,77 @@ public class DamoseApp {
         loadingDialog = new LoadingDialog(null);
         loadingDialog.setVisible(true);
 
-        // Run loading steps in background thread
+        // Real-time feeds are fetched while static data loads;
+        // rtReady completes on data, on a failed fetch or on timeout
+        long rtStartNanos = System.nanoTime();
+        CompletableFuture<Void> rtReady = new CompletableFuture<>();
+        RealtimeService.setOnDataReceived(() -> rtReady.complete(null));
+        RealtimeService.setMode(ConnectionMode.ONLINE);
         new Thread(() -> {
-            try {
-                // Step 1: Initialization
-                SwingUtilities.invokeLater(() -> loadingDialog.stepInitStart());
-                Thread.sleep(300);
-
-                // Initialize database
-                DatabaseManager.initialize();
-                SwingUtilities.invokeLater(() -> loadingDialog.stepInitDone());
-                Thread.sleep(200);
-
-                // Step 2: Static GTFS data
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticStart());
-
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticProgress("stops.txt"));
-                Thread.sleep(400);
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticProgress("trips.txt"));
-                Thread.sleep(400);
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticProgress("stop_times.txt"));
-                Thread.sleep(500);
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticProgress("calendar_dates.txt"));
-                Thread.sleep(300);
-
-                SwingUtilities.invokeLater(() -> loadingDialog.stepStaticDone(8000, 15000));
-                Thread.sleep(300);
-
-                // Step 3: RT data
-                SwingUtilities.invokeLater(() -> loadingDialog.stepRTStart(AppConstants.RT_TIMEOUT_SECONDS));
-
-                // Set up callback for when RT data is received
-                RealtimeService.setOnDataReceived(() -> {
-                    SwingUtilities.invokeLater(() -> {
-                        loadingDialog.stepRTDone();
-                        finishLoading();
-                    });
-                });
+            RealtimeService.fetchRealtimeFeeds();
+            rtReady.complete(null);
+        }, "RTFetchThread").start();
+        rtReady.completeOnTimeout(null, AppConstants.RT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
-                // Start fetching RT data
-                RealtimeService.setMode(ConnectionMode.ONLINE);
-                RealtimeService.fetchRealtimeFeeds();
-
-                // Timeout check
-                Timer timeoutCheck = new Timer(AppConstants.RT_TIMEOUT_SECONDS * 1000 + 500, e -> {
-                    ((Timer) e.getSource()).stop();
-                    if (!loadingDialog.isDataReceived()) {
-                        SwingUtilities.invokeLater(() -> finishLoading());
-                    }
-                });
-                timeoutCheck.setRepeats(false);
-                timeoutCheck.start();
+        // Run loading steps in background thread
+        new Thread(() -> {
+            // Step 1: Initialization
+            loadingDialog.stepInitStart();
+            DatabaseManager.initialize();
+            loadingDialog.stepInitDone();
+
+            // Step 2: Static GTFS data, files loaded concurrently
+            loadingDialog.stepStaticStart();
+            long staticStartNanos = System.nanoTime();
+            StaticDataBootstrap bootstrap = new StaticDataBootstrap((stage, elapsedMillis, completed, total) ->
+                    loadingDialog.stepStaticProgress(stage.getLabel(), elapsedMillis, completed, total));
+
+            bootstrap.start().whenComplete((data, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    failStartup("Impossibile caricare i dati GTFS.", error);
+                    return;
+                }
+                long staticMillis = (System.nanoTime() - staticStartNanos) / 1_000_000;
+                loadingDialog.stepStaticDone(data.getStops().size(), data.getTrips().size(), staticMillis);
 
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+                // Step 3: RT data, waiting only for what is left of the timeout
+                if (rtReady.isDone()) {
+                    finishRealtimeStep();
+                    finishLoading(data);
+                    return;
+                }
+                long waitedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - rtStartNanos);
+                loadingDialog.stepRTStart((int) Math.max(1, AppConstants.RT_TIMEOUT_SECONDS - waitedSeconds));
+                rtReady.thenRun(() -> SwingUtilities.invokeLater(() -> {
+                    finishRealtimeStep();
+                    finishLoading(data);
+                }));
+            }));
         }, "LoadingThread").start();
     }
 
-    private static void finishLoading() {
+    private static void finishRealtimeStep() {
+        if (RealtimeService.hasRealTimeData()) {
+            loadingDialog.stepRTDone();
+        } else {
+            loadingDialog.stepRTTimeout();
+        }
+    }
+
+    private static void finishLoading(StaticData data) {
         loadingDialog.stepAppStart();
 
         // Load the app in background while keeping the loading dialog visible
         new Thread(() -> {
             try {
-                // Create and start the controller (this does the actual data loading)
+                // Create and start the controller on the preloaded data;
+                // later feed updates are swapped in by the manager
+                StaticDataManager staticData = new StaticDataManager(data, GtfsSource.defaultFeedPath());
                 MainController controller = new MainController();
-                controller.start();
+                controller.start(staticData);
+                staticData.startWatching();
 
-                // After data is loaded and view is ready, close loading dialog
+                // After the view is ready, close loading dialog
                 SwingUtilities.invokeLater(() -> {
                     loadingDialog.stepAppDone();
                     loadingDialog.setProgress(100, "Pronto!");
@@ -139,9 +150,21 @@ public class DamoseApp {
                     closeTimer.start();
                 });
             } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> loadingDialog.dispose());
+                SwingUtilities.invokeLater(() -> failStartup("Impossibile avviare l'applicazione.", e));
             }
         }, "AppStartThread").start();
     }
+
+    /**
+     * Startup cannot go on: tell the user and exit. Must run on the EDT.
+     */
+    private static void failStartup(String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        cause.printStackTrace();
+        loadingDialog.dispose();
+        JOptionPane.showMessageDialog(null, message + "\n" + cause.getMessage(),
+                "Errore di avvio", JOptionPane.ERROR_MESSAGE);
+        System.exit(1);
+    }
 }
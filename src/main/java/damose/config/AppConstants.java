@@ -20,10 +20,38 @@ public final class AppConstants {
             "https://romamobilita.it/sites/default/files/rome_rtgtfs_trip_updates_feed.pb";
 
     // ==================== GTFS Static Paths ====================
-    public static final String GTFS_STOPS_PATH = "/gtfs_static/stops.txt";
-    public static final String GTFS_TRIPS_PATH = "/gtfs_static/trips.txt";
-    public static final String GTFS_STOP_TIMES_PATH = "/gtfs_static/stop_times.txt";
-    public static final String GTFS_CALENDAR_DATES_PATH = "/gtfs_static/calendar_dates.txt";
+    /** Feed zip or directory; overridden by the damose.gtfs system property. */
+    public static final String GTFS_FEED_PATH = "gtfs.zip";
+    public static final String GTFS_FEED_PROPERTY = "damose.gtfs";
+    /** Bundled tables used when no feed is found on disk. */
+    public static final String GTFS_RESOURCE_DIR = "/gtfs_static";
+
+    public static final String GTFS_STOPS_FILE = "stops.txt";
+    public static final String GTFS_TRIPS_FILE = "trips.txt";
+    public static final String GTFS_STOP_TIMES_FILE = "stop_times.txt";
+    public static final String GTFS_CALENDAR_FILE = "calendar.txt";
+    public static final String GTFS_CALENDAR_DATES_FILE = "calendar_dates.txt";
+    public static final String GTFS_AGENCY_FILE = "agency.txt";
+    public static final String GTFS_ROUTES_FILE = "routes.txt";
+    public static final String GTFS_SHAPES_FILE = "shapes.txt";
+    /** Used when agency.txt is missing or has no valid agency_timezone. */
+    public static final String GTFS_DEFAULT_TIMEZONE = "Europe/Rome";
+
+    // ==================== Static Loading ====================
+    /** Parse stop_times.txt in newline-aligned chunks on a fork-join pool. */
+    public static final boolean STOP_TIMES_PARALLEL_LOAD = true;
+    public static final int STOP_TIMES_CHUNK_BYTES = 4 << 20;
+    /** Reuse a memory-mapped snapshot of the parsed feed when the source files are unchanged. */
+    public static final boolean SNAPSHOT_ENABLED = true;
+    public static final String SNAPSHOT_DIR =
+            System.getProperty("user.home") + "/.damose/cache";
+    /** Service dates kept: from this many days before the current month to this many days after its start. */
+    public static final int CALENDAR_HORIZON_PAST_DAYS = 31;
+    public static final int CALENDAR_HORIZON_FUTURE_DAYS = 400;
+    /** Wait for the feed file to stay unchanged this long before reloading it. */
+    public static final int FEED_RELOAD_QUIET_MS = 2_000;
+    /** Reject a reloaded feed when more than this fraction of trips lack stop times or vice versa. */
+    public static final double FEED_RELOAD_MAX_UNMATCHED_TRIPS = 0.01;
 
     // ==================== Timing ====================
     public static final int RT_TIMEOUT_SECONDS = 30;
@@ -35,6 +63,9 @@ public final class AppConstants {
     public static final int IN_ARRIVO_THRESHOLD_MIN = 2;
     public static final int STATIC_WINDOW_MIN = 120;
     public static final int RT_WINDOW_MIN = 90;
+    public static final int ARRIVAL_CACHE_MAX_ENTRIES = 256;
+    public static final long ARRIVAL_CACHE_MAX_AGE_MS = 2 * 60 * 1000;
+    public static final int ARRIVAL_BATCH_THREADS = 4;
 
     // ==================== UI - Midnight Dark Palette ====================
     public static final Color BG_DARK = new Color(17, 17, 21);
@@ -59,6 +90,8 @@ public final class AppConstants {
     // ==================== UI - Route Colors ====================
     public static final Color ROUTE_COLOR = new Color(220, 50, 50, 220);
     public static final Color ROUTE_OUTLINE_COLOR = new Color(120, 20, 20, 255);
+    // Largest deviation from the shapes.txt geometry allowed when drawing a route, in pixels
+    public static final double ROUTE_SHAPE_TOLERANCE_PX = 1.0;
 
     // ==================== UI - Floating Panel ====================
     public static final Color PANEL_BG = new Color(35, 35, 35);
@@ -82,6 +115,10 @@ public final class AppConstants {
     public static final double ROME_LON = 12.4964;
     public static final int DEFAULT_ZOOM = 7;
     public static final int CLICK_PROXIMITY_THRESHOLD = 20;
+    // From this zoom out, stops of the network layer are drawn as clusters
+    public static final int STOP_CLUSTER_MIN_ZOOM = 4;
+    public static final int STOP_CLUSTER_CELL_PX = 48;
+    public static final Color STOP_CLUSTER_COLOR = new Color(220, 50, 50, 210);
 
     // ==================== Database ====================
     public static final String DB_URL = "jdbc:sqlite:bustracker.db";
@@ -4,6 +4,7 @@ import java.awt.geom.Point2D;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Timer;
 import java.util.stream.Collectors;
 
@@ -14,16 +15,11 @@ import org.jxmapviewer.viewer.GeoPosition;
 
 import com.google.transit.realtime.GtfsRealtime;
 
-import damose.data.loader.CalendarLoader;
-import damose.data.loader.StopTimesLoader;
-import damose.data.loader.StopsLoader;
-import damose.data.loader.TripsLoader;
-import damose.data.mapper.StopTripMapper;
-import damose.data.mapper.TripMatcher;
+import damose.data.model.ArrivalPrediction;
+import damose.data.model.Line;
+import damose.data.model.ShapeTable;
 import damose.data.model.Stop;
-import damose.data.model.StopTime;
 import damose.data.model.Trip;
-import damose.data.model.TripServiceCalendar;
 import damose.data.model.TripUpdateRecord;
 import damose.data.model.VehiclePosition;
 import damose.model.ConnectionMode;
@@ -32,6 +28,8 @@ import damose.service.FavoritesService;
 import damose.service.GtfsParser;
 import damose.service.RealtimeService;
 import damose.service.RouteService;
+import damose.service.StaticData;
+import damose.service.StaticDataManager;
 import damose.ui.MainView;
 import damose.ui.map.MapAnimator;
 import damose.ui.map.MapOverlayManager;
@@ -43,12 +41,7 @@ import damose.util.MemoryManager;
  */
 public class MainController {
 
-    private List<Stop> stops;
-    private List<Trip> trips;
-    private List<StopTime> stopTimes;
-    private TripMatcher matcher;
-    private StopTripMapper stopTripMapper;
-    private RouteService routeService;
+    private StaticDataManager staticData;
     private ConnectionMode mode = ConnectionMode.ONLINE;
     private MainView view;
 
@@ -56,50 +49,43 @@ public class MainController {
     private Timer realtimeTimer;
     private long currentFeedTs = Instant.now().getEpochSecond();
 
-    public void start() {
+    /**
+     * Build the view on top of already loaded static data.
+     * New static generations published by the manager are applied to the UI as they arrive.
+     */
+    public void start(StaticDataManager staticData) {
         System.out.println("Starting application...");
 
-        // Load static data
-        stops = StopsLoader.load();
-        trips = TripsLoader.load();
-        stopTimes = StopTimesLoader.load();
-
-        System.out.println("Stops loaded: " + (stops == null ? 0 : stops.size()));
-        System.out.println("Trips loaded: " + (trips == null ? 0 : trips.size()));
-
-        matcher = new TripMatcher(trips);
-        stopTripMapper = new StopTripMapper(stopTimes, matcher);
-        routeService = new RouteService(trips, stopTimes, stops);
-
-        // Load calendar_dates.txt
-        TripServiceCalendar tripServiceCalendar;
-        try {
-            tripServiceCalendar = CalendarLoader.load();
-        } catch (Exception e) {
-            System.out.println("Could not load calendar_dates: " + e.getMessage());
-            tripServiceCalendar = new TripServiceCalendar();
-        }
+        this.staticData = staticData;
+        StaticData data = staticData.current();
+
+        System.out.println("Stops loaded: " + data.getStops().size());
+        System.out.println("Trips loaded: " + data.getTrips().size());
 
         // Initialize ArrivalService
-        arrivalService = new ArrivalService(matcher, stopTripMapper, tripServiceCalendar);
+        arrivalService = new ArrivalService(staticData::current);
 
         // Initialize view
         view = new MainView();
         view.init();
-        view.setAllStops(stops);
+        view.setStopIndex(data.getStopIndex());
+        MapOverlayManager.setStopIndex(data.getStopIndex());
 
-        setupSearchPanel();
+        setupSearchPanel(data);
         
         // Initialize favorites with both stops and lines
-        FavoritesService.init(stops, linesList);
+        FavoritesService.init(data.getStops(), linesList);
         setupStopClickListener();
         setupConnectionButton();
         setupFavoritesButton();
         setupFloatingPanelFavorite();
         setupBusToggleButton();
+        setupStopToggleButton();
 
         view.addWaypointClickListener();
-        MapOverlayManager.updateMap(view.getMapViewer(), Collections.emptyList(), Collections.emptyList(), trips);
+        MapOverlayManager.updateMap(view.getMapViewer(), Collections.emptyList(), Collections.emptyList(),
+                data.getTrips());
+        staticData.addListener(next -> SwingUtilities.invokeLater(() -> applyStaticData(next)));
 
         // Check for RT data availability and set initial mode
         // startRealtimeUpdates() is called after mode check completes
@@ -171,6 +157,16 @@ public class MainController {
         });
     }
     
+    private void setupStopToggleButton() {
+        view.getStopToggleButton().addActionListener(e -> {
+            boolean visible = MapOverlayManager.toggleAllStopsVisible();
+            view.getStopToggleButton().setToolTipText(
+                visible ? "Nascondi fermate" : "Mostra fermate"
+            );
+            view.getStopToggleButton().getModel().setPressed(!visible);
+        });
+    }
+
     private void setupFloatingPanelFavorite() {
         view.setOnFavoriteToggle(() -> {
             String stopId = view.getFloatingPanelStopId();
@@ -183,16 +179,15 @@ public class MainController {
         view.setOnViewAllTrips(() -> {
             String stopId = view.getFloatingPanelStopId();
             if (stopId != null) {
-                List<String> allTrips = arrivalService.getAllTripsForStopToday(stopId, mode, currentFeedTs);
+                List<ArrivalPrediction> allTrips = arrivalService.getAllTripsForStopToday(stopId, mode, currentFeedTs);
                 view.showAllTripsInPanel(allTrips);
             }
         });
     }
     
     private void showFavoritesDialog() {
-        List<Stop> favorites = FavoritesService.getAllFavorites();
         // Always show the search with favorites tab, even if empty
-        view.showFavoritesInSearch(favorites);
+        view.showFavoritesInSearch(FavoritesService.getFavoriteStops(), FavoritesService.getFavoriteLines());
     }
     
     /**
@@ -265,7 +260,7 @@ public class MainController {
         if (stopId != null && view.isFloatingPanelVisible()) {
             Stop stop = findStopById(stopId);
             if (stop != null) {
-                List<String> arrivi = arrivalService.computeArrivalsForStop(stopId, mode, currentFeedTs);
+                List<ArrivalPrediction> arrivi = arrivalService.computeArrivalsForStop(stopId, mode);
                 boolean isFavorite = FavoritesService.isFavorite(stopId);
                 view.refreshFloatingPanel(stop.getStopName(), stopId, arrivi, isFavorite);
             }
@@ -273,8 +268,8 @@ public class MainController {
     }
     
     private Stop findStopById(String stopId) {
-        if (stopId == null || stops == null) return null;
-        for (Stop s : stops) {
+        if (stopId == null) return null;
+        for (Stop s : staticData.current().getStops()) {
             if (stopId.equals(s.getStopId())) return s;
         }
         return null;
@@ -287,27 +282,10 @@ public class MainController {
         });
     }
 
-    private List<Stop> linesList;
+    private List<Line> linesList;
     
-    private void setupSearchPanel() {
-        // Prepare lines list
-        linesList = trips.stream()
-            .map(t -> t.getRouteId() + " - " + t.getTripHeadsign())
-            .distinct()
-            .map(lineName -> {
-                Stop fakeLine = new Stop(
-                    "fake-" + lineName.replace(" ", ""),
-                    "",
-                    lineName,
-                    0.0,
-                    0.0
-                );
-                fakeLine.markAsFakeLine();
-                return fakeLine;
-            })
-            .collect(Collectors.toList());
-
-        view.setSearchData(stops, linesList);
+    private void setupSearchPanel(StaticData data) {
+        setSearchData(data);
         view.getSearchButton().addActionListener(e -> view.showSearchOverlay());
 
         view.setOnSearchSelect(stop -> {
@@ -315,28 +293,57 @@ public class MainController {
                 handleStopSelection(stop);
             }
         });
+        view.setOnLineSearchSelect(line -> {
+            if (line != null) {
+                handleLineSelection(line);
+            }
+        });
+    }
+
+    private void setSearchData(StaticData data) {
+        RouteService routeService = data.getRouteService();
+        linesList = routeService.getLines();
+
+        view.setSearchData(data.getStops(), linesList);
+        view.setLineSearch(query -> routeService.searchLines(query, 50));
+        view.setStopRoutes(stopId -> data.getStopRoutes().getRouteIds(stopId).stream()
+            .map(routeService::getRoute)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()));
+        view.setFloatingPanelStopRoutes(stopId -> data.getStopRoutes().getRoutes(stopId,
+            data.getClock().dateOf(Instant.now().getEpochSecond())));
+    }
+
+    /**
+     * Switch the UI to a newly published static generation (EDT).
+     */
+    private void applyStaticData(StaticData data) {
+        arrivalService.invalidateBoards();
+        view.setStopIndex(data.getStopIndex());
+        MapOverlayManager.setStopIndex(data.getStopIndex());
+        setSearchData(data);
+        FavoritesService.init(data.getStops(), linesList);
+        refreshMapOverlay();
+        refreshFloatingPanelIfVisible();
+        System.out.println("Static data updated: " + data.getStops().size() + " stops, "
+                + data.getTrips().size() + " trips");
     }
 
     private void handleStopSelection(Stop stop) {
-        if (stop.isFakeLine()) {
-            handleLineSelection(stop);
-        } else {
-            MapOverlayManager.clearRoute();
-            MapOverlayManager.clearBusRouteFilter(); // Show all buses when viewing a stop
-            MapOverlayManager.setVisibleStops(Collections.singletonList(stop));
-            centerOnStop(stop);
-            showFloatingArrivals(stop);
-            refreshMapOverlay();
-        }
+        MapOverlayManager.clearRoute();
+        MapOverlayManager.clearBusRouteFilter(); // Show all buses when viewing a stop
+        MapOverlayManager.setVisibleStops(Collections.singletonList(stop));
+        centerOnStop(stop);
+        showFloatingArrivals(stop);
+        refreshMapOverlay();
     }
 
-    private void handleLineSelection(Stop fakeLine) {
-        String lineName = fakeLine.getStopName();
-        String[] parts = lineName.split(" - ", 2);
-        String routeId = parts[0].trim();
+    private void handleLineSelection(Line line) {
+        String routeId = line.getRouteId();
 
-        List<Stop> routeStops = routeService.getStopsForRouteAndHeadsign(routeId, 
-            parts.length > 1 ? parts[1].trim() : null);
+        StaticData data = staticData.current();
+        RouteService routeService = data.getRouteService();
+        List<Stop> routeStops = routeService.getStopsForRouteAndHeadsign(routeId, line.getHeadsign());
 
         if (routeStops.isEmpty()) {
             routeStops = routeService.getStopsForRoute(routeId);
@@ -346,7 +353,9 @@ public class MainController {
             return;
         }
 
-        MapOverlayManager.setRoute(routeStops);
+        Trip trip = routeService.findRepresentativeTrip(routeId, line.getHeadsign());
+        int shapeIdx = trip != null ? data.getShapes().indexOfShape(trip.getShapeId()) : ShapeTable.NONE;
+        MapOverlayManager.setRoute(routeStops, line.getRoute(), data.getShapes(), shapeIdx);
         MapOverlayManager.setBusRouteFilter(routeId); // Only show buses of this route
         refreshMapOverlay();
         fitMapToRoute(routeStops);
@@ -393,12 +402,12 @@ public class MainController {
     }
 
     private void showFloatingArrivals(Stop stop) {
-        List<String> arrivi = arrivalService.computeArrivalsForStop(stop.getStopId(), mode, currentFeedTs);
+        List<ArrivalPrediction> arrivi = arrivalService.computeArrivalsForStop(stop.getStopId(), mode);
         boolean isFavorite = FavoritesService.isFavorite(stop.getStopId());
         showPanel(stop, arrivi, isFavorite);
     }
 
-    private void showPanel(Stop stop, List<String> arrivi, boolean isFavorite) {
+    private void showPanel(Stop stop, List<ArrivalPrediction> arrivi, boolean isFavorite) {
         GeoPosition anchorGeo = new GeoPosition(stop.getStopLat(), stop.getStopLon());
         Point2D p2d = view.getMapViewer().convertGeoPositionToPoint(anchorGeo);
         SwingUtilities.invokeLater(() -> view.showFloatingPanel(
@@ -421,6 +430,7 @@ public class MainController {
         // In offline mode, no buses are shown
 
         final List<VehiclePosition> busPositions = positions;
+        final List<Trip> trips = staticData.current().getTrips();
         SwingUtilities.invokeLater(() -> MapOverlayManager.updateMap(
                 view.getMapViewer(), Collections.emptyList(), busPositions, trips));
     }
@@ -434,6 +444,7 @@ public class MainController {
         realtimeTimer.scheduleAtFixedRate(new java.util.TimerTask() {
             @Override
             public void run() {
+                StaticData data = staticData.current();
                 GtfsRealtime.FeedMessage tuFeed = RealtimeService.getLatestTripUpdates();
                 GtfsRealtime.FeedMessage vpFeed = RealtimeService.getLatestVehiclePositions();
 
@@ -446,8 +457,8 @@ public class MainController {
 
                 if (mode == ConnectionMode.ONLINE) {
                     try {
-                        List<TripUpdateRecord> updates = GtfsParser.parseTripUpdates(tuFeed, stopTripMapper, currentFeedTs);
-                        arrivalService.updateRealtimeArrivals(updates);
+                        List<TripUpdateRecord> updates = GtfsParser.parseTripUpdates(tuFeed, data.getStopTripMapper(), currentFeedTs);
+                        arrivalService.updateRealtimeArrivals(updates, data.getStopTimes());
                     } catch (Exception ex) {
                         System.out.println("Error parsing TripUpdates RT: " + ex.getMessage());
                     }
@@ -471,7 +482,7 @@ public class MainController {
 
                 final List<VehiclePosition> busPositions = computedPositions;
                 SwingUtilities.invokeLater(() -> MapOverlayManager.updateMap(
-                        view.getMapViewer(), Collections.emptyList(), busPositions, trips));
+                        view.getMapViewer(), Collections.emptyList(), busPositions, data.getTrips()));
             }
         }, 0, 30_000);
     }
@@ -0,0 +1,57 @@
+package damose.data.loader;
+
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
+import damose.config.AppConstants;
+
+/**
+ * Loader for GTFS agency.txt file.
+ * Only the time zone is used: every agency of a feed must share it.
+ */
+public final class AgencyLoader {
+
+    private AgencyLoader() {
+        // Utility class
+    }
+
+    public static ZoneId loadTimeZone() {
+        return loadTimeZone(GtfsSource.classpath());
+    }
+
+    /**
+     * @return the agency_timezone of the first agency, or {@link AppConstants#GTFS_DEFAULT_TIMEZONE}
+     */
+    public static ZoneId loadTimeZone(GtfsSource source) {
+        ZoneId fallback = ZoneId.of(AppConstants.GTFS_DEFAULT_TIMEZONE);
+
+        try (InputStream in = source.open(AppConstants.GTFS_AGENCY_FILE)) {
+            if (in == null) {
+                System.out.println("agency.txt not found in " + source + ", using " + fallback);
+                return fallback;
+            }
+
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colTimezone = csv.column("agency_timezone");
+                if (colTimezone < 0) {
+                    System.out.println("agency.txt: missing agency_timezone, using " + fallback);
+                    return fallback;
+                }
+
+                while (csv.next()) {
+                    if (csv.isEmpty(colTimezone)) continue;
+                    ZoneId zone = ZoneId.of(csv.getString(colTimezone).trim());
+                    System.out.println("Agency time zone: " + zone);
+                    return zone;
+                }
+            }
+        } catch (DateTimeException e) {
+            System.out.println("agency.txt: invalid agency_timezone (" + e.getMessage() + "), using " + fallback);
+        } catch (Exception e) {
+            System.out.println("Error reading agency.txt: " + e.getMessage());
+            source.reportFailure(AppConstants.GTFS_AGENCY_FILE, e);
+        }
+        return fallback;
+    }
+}
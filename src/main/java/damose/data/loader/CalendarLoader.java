@@ -1,69 +1,119 @@
 package damose.data.loader;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.Set;
 
 import damose.config.AppConstants;
 import damose.data.model.TripServiceCalendar;
 
 /**
- * Loader for GTFS calendar_dates.txt file.
- * Format: service_id,date,exception_type
+ * Loader for GTFS calendar.txt and calendar_dates.txt files.
+ * calendar.txt format: service_id,monday..sunday,start_date,end_date
+ * calendar_dates.txt format: service_id,date,exception_type
  * - exception_type 1 => add service
  * - exception_type 2 => remove service
+ * Either file may be missing; exceptions are applied after the weekly periods.
+ * Only dates within a horizon around the current month are kept, see {@link #horizonStart}.
  */
 public final class CalendarLoader {
 
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String[] WEEKDAY_COLUMNS = {
+        "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    };
 
     private CalendarLoader() {
         // Utility class
     }
 
     public static TripServiceCalendar load() {
-        return loadFromCalendarDates(AppConstants.GTFS_CALENDAR_DATES_PATH);
+        return load(GtfsSource.classpath());
     }
 
-    public static TripServiceCalendar loadFromCalendarDates(String calendarDatesPath) {
-        TripServiceCalendar calendar = new TripServiceCalendar();
+    public static TripServiceCalendar load(GtfsSource source) {
+        LocalDate today = LocalDate.now();
+        TripServiceCalendar.Builder calendar = new TripServiceCalendar.Builder(horizonStart(today), horizonEnd(today));
+        loadWeeklyServices(source, calendar);
+        loadExceptions(source, calendar);
 
-        try (InputStream in = CalendarLoader.class.getResourceAsStream(calendarDatesPath)) {
+        System.out.println("TripServiceCalendar loaded: serviceCount=" + calendar.serviceCount());
+        return calendar.build();
+    }
+
+    private static void loadWeeklyServices(GtfsSource source, TripServiceCalendar.Builder calendar) {
+        try (InputStream in = source.open(AppConstants.GTFS_CALENDAR_FILE)) {
             if (in == null) {
-                System.out.println("calendar_dates.txt not found: " + calendarDatesPath);
-                return calendar;
+                System.out.println("calendar.txt not found in " + source);
+                return;
             }
 
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-                br.readLine(); // Skip header
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colService = csv.column("service_id");
+                int colStart = csv.column("start_date");
+                int colEnd = csv.column("end_date");
+                int[] colDays = new int[WEEKDAY_COLUMNS.length];
+                for (int d = 0; d < colDays.length; d++) {
+                    colDays[d] = csv.column(WEEKDAY_COLUMNS[d]);
+                }
 
-                String line;
-                int lineNo = 1;
-                while ((line = br.readLine()) != null) {
-                    lineNo++;
-                    line = line.trim();
-                    if (line.isEmpty()) continue;
+                if (colService < 0 || colStart < 0 || colEnd < 0) {
+                    System.out.println("calendar.txt: missing required columns");
+                    return;
+                }
 
-                    String[] cols = line.split(",", -1);
-                    if (cols.length < 2) {
-                        System.out.println("calendar_dates.txt: line " + lineNo + " ignored (insufficient columns)");
+                while (csv.next()) {
+                    if (csv.isEmpty(colService) || csv.isEmpty(colStart) || csv.isEmpty(colEnd)) {
                         continue;
                     }
 
-                    String serviceId = cols[0].trim();
-                    String dateStr = cols.length > 1 ? cols[1].trim() : "";
-                    String exStr = cols.length > 2 ? cols[2].trim() : "";
+                    try {
+                        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+                        for (int d = 0; d < colDays.length; d++) {
+                            if (colDays[d] >= 0 && csv.getInt(colDays[d], 0) == 1) {
+                                days.add(DayOfWeek.of(d + 1));
+                            }
+                        }
+                        calendar.addWeeklyService(csv.getCachedString(colService), days,
+                                parseDate(csv.getInt(colStart, -1)), parseDate(csv.getInt(colEnd, -1)));
+                    } catch (Exception e) {
+                        System.out.println("calendar.txt: line " + csv.lineNumber() + " parsing failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error reading calendar.txt: " + e.getMessage());
+            source.reportFailure(AppConstants.GTFS_CALENDAR_FILE, e);
+        }
+    }
+
+    private static void loadExceptions(GtfsSource source, TripServiceCalendar.Builder calendar) {
+        try (InputStream in = source.open(AppConstants.GTFS_CALENDAR_DATES_FILE)) {
+            if (in == null) {
+                System.out.println("calendar_dates.txt not found in " + source);
+                return;
+            }
+
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colService = csv.column("service_id");
+                int colDate = csv.column("date");
+                int colException = csv.column("exception_type");
 
-                    if (serviceId.isEmpty() || dateStr.isEmpty() || exStr.isEmpty()) {
+                if (colService < 0 || colDate < 0 || colException < 0) {
+                    System.out.println("calendar_dates.txt: missing required columns");
+                    return;
+                }
+
+                while (csv.next()) {
+                    if (csv.isEmpty(colService) || csv.isEmpty(colDate) || csv.isEmpty(colException)) {
                         continue;
                     }
 
                     try {
-                        LocalDate date = LocalDate.parse(dateStr, DATE_FORMAT);
-                        int exceptionType = Integer.parseInt(exStr);
+                        String serviceId = csv.getCachedString(colService);
+                        LocalDate date = parseDate(csv.getInt(colDate, -1));
+                        int exceptionType = csv.getInt(colException, -1);
 
                         if (exceptionType == 1) {
                             calendar.addServiceDate(serviceId, date);
@@ -71,16 +121,38 @@ public final class CalendarLoader {
                             calendar.removeServiceDate(serviceId, date);
                         }
                     } catch (Exception e) {
-                        System.out.println("calendar_dates.txt: line " + lineNo + " parsing failed: " + e.getMessage());
+                        System.out.println("calendar_dates.txt: line " + csv.lineNumber() + " parsing failed: " + e.getMessage());
                     }
                 }
             }
         } catch (Exception e) {
             System.out.println("Error reading calendar_dates.txt: " + e.getMessage());
+            source.reportFailure(AppConstants.GTFS_CALENDAR_DATES_FILE, e);
         }
+    }
 
-        System.out.println("TripServiceCalendar loaded: serviceCount=" + calendar.serviceCount());
-        return calendar;
+    /**
+     * First service date kept when loading on a given day.
+     * The horizon only moves with the month, so calendars loaded in the same month match.
+     */
+    public static LocalDate horizonStart(LocalDate today) {
+        return today.withDayOfMonth(1).minusDays(AppConstants.CALENDAR_HORIZON_PAST_DAYS);
+    }
+
+    /**
+     * Last service date kept when loading on a given day.
+     */
+    public static LocalDate horizonEnd(LocalDate today) {
+        return today.withDayOfMonth(1).plusDays(AppConstants.CALENDAR_HORIZON_FUTURE_DAYS);
     }
-}
 
+    /**
+     * Convert a yyyyMMdd integer to a date.
+     */
+    static LocalDate parseDate(int yyyymmdd) {
+        if (yyyymmdd < 0) {
+            throw new IllegalArgumentException("invalid date");
+        }
+        return LocalDate.of(yyyymmdd / 10_000, yyyymmdd / 100 % 100, yyyymmdd % 100);
+    }
+}
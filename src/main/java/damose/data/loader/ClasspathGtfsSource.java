@@ -0,0 +1,58 @@
+package damose.data.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Paths;
+import java.util.jar.JarEntry;
+
+/**
+ * GTFS tables bundled as classpath resources.
+ */
+public final class ClasspathGtfsSource implements GtfsSource {
+
+    private final String resourceDir;
+
+    public ClasspathGtfsSource(String resourceDir) {
+        this.resourceDir = resourceDir;
+    }
+
+    @Override
+    public InputStream open(String fileName) {
+        return ClasspathGtfsSource.class.getResourceAsStream(resourceDir + "/" + fileName);
+    }
+
+    /**
+     * Jar entries reuse the CRC stored in the archive; plain files are checksummed.
+     */
+    @Override
+    public long checksum(String fileName) throws IOException {
+        URL url = ClasspathGtfsSource.class.getResource(resourceDir + "/" + fileName);
+        if (url == null) return -1;
+
+        URLConnection conn = url.openConnection();
+        if (conn instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) conn).getJarEntry();
+            return ZipGtfsSource.checksum(entry.getSize(), entry.getCrc());
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return DirectoryGtfsSource.checksum(Paths.get(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+
+        try (InputStream in = conn.getInputStream()) {
+            return DirectoryGtfsSource.checksum(in);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "classpath:" + resourceDir;
+    }
+}
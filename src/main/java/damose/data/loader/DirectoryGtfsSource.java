@@ -0,0 +1,62 @@
+package damose.data.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * GTFS tables stored as plain files in a directory.
+ */
+public final class DirectoryGtfsSource implements GtfsSource {
+
+    private final Path dir;
+
+    public DirectoryGtfsSource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public InputStream open(String fileName) throws IOException {
+        Path file = dir.resolve(fileName);
+        return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+    }
+
+    @Override
+    public long checksum(String fileName) throws IOException {
+        Path file = dir.resolve(fileName);
+        return Files.isRegularFile(file) ? checksum(file) : -1;
+    }
+
+    /**
+     * CRC32C of a file, combined with its size.
+     * The file is streamed rather than mapped, so no mapping keeps it locked once
+     * the stream is closed and files of any size are handled.
+     */
+    static long checksum(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return checksum(in);
+        }
+    }
+
+    /**
+     * CRC32C of a stream read to the end, combined with its length.
+     */
+    static long checksum(InputStream in) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buf = new byte[1 << 16];
+        long size = 0;
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            crc.update(buf, 0, n);
+            size += n;
+        }
+        return ZipGtfsSource.checksum(size, crc.getValue());
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
@@ -0,0 +1,430 @@
+package damose.data.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Byte-level reader for GTFS CSV files.
+ * Columns are resolved by header name, so files with extra or reordered
+ * columns load correctly. Fields are tokenized in place (quoted fields and
+ * escaped quotes included); numbers and times are parsed straight from the
+ * byte buffer and strings are decoded only when requested.
+ */
+public final class GtfsCsvReader implements Closeable {
+
+    /** Value returned by {@link #getTimeSeconds(int)} for empty or malformed times. */
+    public static final int NO_TIME = -1;
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // Exact powers of ten for the fast decimal path
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+    private int lineNumber;
+
+    private final StringCache cache = new StringCache();
+
+    private final Map<String, Integer> header;
+
+    /**
+     * Read a whole CSV stream; the first record is the header.
+     */
+    public GtfsCsvReader(InputStream in) throws IOException {
+        this.in = in;
+        this.buf = new byte[DEFAULT_BUFFER_SIZE];
+        this.header = new HashMap<>();
+        readHeader();
+    }
+
+    /**
+     * Read the records in {@code data[from, to)}; the first record is the header.
+     * Quoted fields are unescaped in place, so the array is modified.
+     */
+    public GtfsCsvReader(byte[] data, int from, int to) throws IOException {
+        this(data, from, to, new HashMap<>());
+        readHeader();
+    }
+
+    private GtfsCsvReader(byte[] data, int from, int to, Map<String, Integer> header) {
+        this.in = null;
+        this.buf = data;
+        this.pos = from;
+        this.limit = to;
+        this.header = header;
+    }
+
+    /**
+     * Reader over a range of header-less records that shares this reader's columns.
+     * Used to parse chunks of a file independently.
+     */
+    public GtfsCsvReader withData(byte[] data, int from, int to) {
+        return new GtfsCsvReader(data, from, to, header);
+    }
+
+    private void readHeader() throws IOException {
+        if (!next()) return;
+
+        // Skip UTF-8 BOM on the first header field
+        if (fieldCount > 0 && fieldEnd[0] - fieldStart[0] >= 3
+                && buf[fieldStart[0]] == (byte) 0xEF
+                && buf[fieldStart[0] + 1] == (byte) 0xBB
+                && buf[fieldStart[0] + 2] == (byte) 0xBF) {
+            fieldStart[0] += 3;
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            header.putIfAbsent(getString(i), i);
+        }
+    }
+
+    // -------- Header --------
+
+    /**
+     * @return index of the named column, or -1 if the file does not have it
+     */
+    public int column(String name) {
+        Integer idx = header.get(name);
+        return idx != null ? idx : -1;
+    }
+
+    public boolean hasColumn(String name) {
+        return header.containsKey(name);
+    }
+
+    // -------- Records --------
+
+    /**
+     * Advance to the next non-blank record.
+     * @return false when the end of input is reached
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int end = findRecordEnd();
+            if (end < 0) return false;
+
+            int start = pos;
+            pos = end < limit ? end + 1 : end;
+            lineNumber++;
+
+            int recordEnd = end;
+            if (recordEnd > start && buf[recordEnd - 1] == '\r') recordEnd--;
+            if (recordEnd == start) continue;
+
+            tokenize(start, recordEnd);
+            return true;
+        }
+    }
+
+    /**
+     * 1-based line number of the current record (header is line 1).
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Offset in the buffer of the next unread record (meaningful for array-backed readers).
+     */
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * Locate the newline that ends the record starting at {@code pos},
+     * refilling the buffer as needed. Newlines inside quotes do not end a record.
+     * @return index of the terminating newline (or {@code limit} at end of input), -1 if no data left
+     */
+    private int findRecordEnd() throws IOException {
+        int scan = pos;
+        boolean inQuotes = false;
+        while (true) {
+            while (scan < limit) {
+                byte c = buf[scan];
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                } else if (c == '\n' && !inQuotes) {
+                    return scan;
+                }
+                scan++;
+            }
+            int scanned = scan - pos;
+            if (!fill()) {
+                return pos < limit ? limit : -1;
+            }
+            scan = pos + scanned;
+        }
+    }
+
+    /**
+     * Compact unread bytes to the start of the buffer and read more.
+     * @return false if the stream is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (in == null || eof) return false;
+
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Split [start, end) into fields, unescaping quoted fields in place.
+     */
+    private void tokenize(int start, int end) {
+        fieldCount = 0;
+        int i = start;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+            }
+
+            int fs = i;
+            int w = i;
+            boolean inQuotes = false;
+            while (i < end) {
+                byte c = buf[i];
+                if (c == '"') {
+                    if (inQuotes && i + 1 < end && buf[i + 1] == '"') {
+                        buf[w++] = '"';
+                        i += 2;
+                        continue;
+                    }
+                    inQuotes = !inQuotes;
+                    i++;
+                    continue;
+                }
+                if (c == ',' && !inQuotes) break;
+                if (w != i) buf[w] = c;
+                w++;
+                i++;
+            }
+
+            // Trim surrounding blanks
+            int s = fs;
+            int e = w;
+            while (s < e && isBlank(buf[s])) s++;
+            while (e > s && isBlank(buf[e - 1])) e--;
+            fieldStart[fieldCount] = s;
+            fieldEnd[fieldCount] = e;
+            fieldCount++;
+
+            if (i >= end) break;
+            i++; // skip comma
+        }
+    }
+
+    private static boolean isBlank(byte c) {
+        return c == ' ' || c == '\t';
+    }
+
+    // -------- Field access --------
+
+    public boolean isEmpty(int col) {
+        return col < 0 || col >= fieldCount || fieldStart[col] == fieldEnd[col];
+    }
+
+    /**
+     * Decode a field as a new String ("" if the column is absent).
+     */
+    public String getString(int col) {
+        if (isEmpty(col)) return "";
+        return new String(buf, fieldStart[col], fieldEnd[col] - fieldStart[col], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Like {@link #getString(int)}, but values repeated across rows (ids, headsigns)
+     * are returned as the same instance without decoding them again.
+     */
+    public String getCachedString(int col) {
+        if (isEmpty(col)) return "";
+        return cache.get(buf, fieldStart[col], fieldEnd[col]);
+    }
+
+    public int getInt(int col, int defaultValue) {
+        if (isEmpty(col)) return defaultValue;
+        int i = fieldStart[col];
+        int end = fieldEnd[col];
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+            if (i == end) return defaultValue;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return defaultValue;
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE) return defaultValue;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    public double getDouble(int col, double defaultValue) {
+        if (isEmpty(col)) return defaultValue;
+        int i = fieldStart[col];
+        int end = fieldEnd[col];
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        for (; i < end; i++) {
+            byte c = buf[i];
+            if (c == '.' && !seenDot) {
+                seenDot = true;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9 || digits >= 15) {
+                return parseDoubleSlow(col, defaultValue);
+            }
+            mantissa = mantissa * 10 + d;
+            if (mantissa != 0) digits++;
+            if (seenDot) fractionDigits++;
+        }
+        if (fractionDigits >= POW10.length) return parseDoubleSlow(col, defaultValue);
+
+        // Both operands are exact, so the division is correctly rounded
+        double value = mantissa / POW10[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int col, double defaultValue) {
+        try {
+            return Double.parseDouble(getString(col));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parse a GTFS time (H:MM:SS, hours may exceed 24) into seconds since the service day start.
+     * @return seconds, or {@link #NO_TIME} if empty or malformed
+     */
+    public int getTimeSeconds(int col) {
+        if (isEmpty(col)) return NO_TIME;
+        int i = fieldStart[col];
+        int end = fieldEnd[col];
+
+        int total = 0;
+        int part = 0;
+        int parts = 0;
+        int partDigits = 0;
+        for (; i <= end; i++) {
+            if (i == end || buf[i] == ':') {
+                if (partDigits == 0) return NO_TIME;
+                total = total * 60 + part;
+                parts++;
+                part = 0;
+                partDigits = 0;
+                continue;
+            }
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return NO_TIME;
+            part = part * 10 + d;
+            partDigits++;
+        }
+        return parts == 3 ? total : NO_TIME;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) in.close();
+    }
+
+    /**
+     * Open-addressing cache of decoded ASCII values keyed by their bytes.
+     * Non-ASCII values bypass the cache.
+     */
+    private static final class StringCache {
+
+        private String[] slots = new String[1024];
+        private int count;
+
+        String get(byte[] b, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                if (b[i] < 0) {
+                    return new String(b, from, to - from, StandardCharsets.UTF_8);
+                }
+                h = 31 * h + b[i];
+            }
+
+            int mask = slots.length - 1;
+            int slot = mix(h) & mask;
+            String s;
+            while ((s = slots[slot]) != null) {
+                if (s.hashCode() == h && matches(s, b, from, to)) return s;
+                slot = (slot + 1) & mask;
+            }
+
+            s = new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+            slots[slot] = s;
+            if (++count * 2 > slots.length) rehash();
+            return s;
+        }
+
+        private static boolean matches(String s, byte[] b, int from, int to) {
+            if (s.length() != to - from) return false;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) != b[from + i]) return false;
+            }
+            return true;
+        }
+
+        private void rehash() {
+            String[] old = slots;
+            slots = new String[old.length * 2];
+            int mask = slots.length - 1;
+            for (String s : old) {
+                if (s == null) continue;
+                int slot = mix(s.hashCode()) & mask;
+                while (slots[slot] != null) slot = (slot + 1) & mask;
+                slots[slot] = s;
+            }
+        }
+
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package damose.data.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import damose.config.AppConstants;
+import damose.data.mapper.StopTripMapper;
+import damose.data.model.Route;
+import damose.data.model.ShapeTable;
+import damose.data.model.Stop;
+import damose.data.model.StopTimeTable;
+import damose.data.model.StringDictionary;
+import damose.data.model.Trip;
+import damose.data.model.TripServiceCalendar;
+
+/**
+ * Versioned binary snapshot of the parsed static feed.
+ * The file is keyed by a content hash of the source files and memory-mapped on open:
+ * the stop_times and shapes tables, by far the largest parts, are queried in place off-heap,
+ * while the small stops, routes, trips and calendar sections are decoded.
+ * The stop times table carries its per-stop departure order and per-trip stop order, and
+ * the {@link StopTripMapper} trip and alias indexes are saved alongside; the other
+ * indexes are cheap next to parsing and are rebuilt from the mapped data.
+ */
+public final class GtfsSnapshot {
+
+    private static final int MAGIC = 0x444D5331; // "DMS1"
+    private static final int VERSION = 7;
+
+    // Temp files untouched this long were left by a writer that died
+    private static final long STALE_TMP_MILLIS = 60 * 60 * 1000L;
+
+    private static final String[] SOURCE_FILES = {
+        AppConstants.GTFS_STOPS_FILE,
+        AppConstants.GTFS_TRIPS_FILE,
+        AppConstants.GTFS_STOP_TIMES_FILE,
+        AppConstants.GTFS_CALENDAR_FILE,
+        AppConstants.GTFS_CALENDAR_DATES_FILE,
+        AppConstants.GTFS_AGENCY_FILE,
+        AppConstants.GTFS_ROUTES_FILE,
+        AppConstants.GTFS_SHAPES_FILE
+    };
+
+    private final long sourceHash;
+    private final List<Stop> stops;
+    private final List<Route> routes;
+    private final List<Trip> trips;
+    private final TripServiceCalendar calendar;
+    private final ZoneId timeZone;
+    private final StopTimeTable stopTimes;
+    private final ShapeTable shapes;
+    private final StopTripMapper stopTripMapper;
+
+    private GtfsSnapshot(long sourceHash, List<Stop> stops, List<Route> routes, List<Trip> trips,
+                         TripServiceCalendar calendar, ZoneId timeZone, StopTimeTable stopTimes,
+                         ShapeTable shapes, StopTripMapper stopTripMapper) {
+        this.sourceHash = sourceHash;
+        this.stops = stops;
+        this.routes = routes;
+        this.trips = trips;
+        this.calendar = calendar;
+        this.timeZone = timeZone;
+        this.stopTimes = stopTimes;
+        this.shapes = shapes;
+        this.stopTripMapper = stopTripMapper;
+    }
+
+    // -------- Getters --------
+    public long getSourceHash() {
+        return sourceHash;
+    }
+
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public List<Trip> getTrips() {
+        return trips;
+    }
+
+    public TripServiceCalendar getCalendar() {
+        return calendar;
+    }
+
+    public ZoneId getTimeZone() {
+        return timeZone;
+    }
+
+    public StopTimeTable getStopTimes() {
+        return stopTimes;
+    }
+
+    public ShapeTable getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Trip and alias indexes over {@link #getStopTimes()} and {@link #getTrips()}.
+     */
+    public StopTripMapper getStopTripMapper() {
+        return stopTripMapper;
+    }
+
+    // -------- Location --------
+
+    /**
+     * Content hash of the source tables, from the checksum each source provides.
+     */
+    public static long sourceHash(GtfsSource source) throws IOException {
+        long hash = 0xCBF29CE484222325L;
+        for (String fileName : SOURCE_FILES) {
+            hash = mix(hash, fileName.hashCode());
+            hash = mix(hash, source.checksum(fileName));
+        }
+        return hash;
+    }
+
+    public static Path pathFor(long sourceHash) {
+        return Paths.get(AppConstants.SNAPSHOT_DIR,
+                String.format("gtfs-v%d-%016x.snap", VERSION, sourceHash));
+    }
+
+    // -------- Read --------
+
+    /**
+     * Map a snapshot file.
+     * @return the snapshot, or null if missing, stale, from another version or unreadable
+     */
+    public static GtfsSnapshot open(Path file, long sourceHash) {
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != sourceHash) {
+                return null;
+            }
+
+            List<Stop> stops = readStops(buf);
+            List<Route> routes = readRoutes(buf);
+            List<Trip> trips = readTrips(buf);
+            TripServiceCalendar calendar = readCalendar(buf);
+            // The calendar only holds the horizon of the month it was parsed in
+            if (!calendar.getHorizonStart().equals(CalendarLoader.horizonStart(LocalDate.now()))) {
+                System.out.println("GTFS snapshot calendar is from another month, parsing again: " + file);
+                return null;
+            }
+            ZoneId timeZone = ZoneId.of(readString(buf));
+            StopTimeTable stopTimes = StopTimeTable.read(buf);
+            ShapeTable shapes = ShapeTable.read(buf);
+            StopTripMapper stopTripMapper = StopTripMapper.read(buf, stopTimes, trips);
+            if (buf.getInt() != MAGIC) return null;
+
+            System.out.println("GTFS snapshot mapped: " + file + " (" + ch.size() / 1024 + " KB)");
+            return new GtfsSnapshot(sourceHash, stops, routes, trips, calendar, timeZone, stopTimes, shapes,
+                    stopTripMapper);
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not open GTFS snapshot " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<Stop> readStops(ByteBuffer in) {
+        int count = in.getInt();
+        List<Stop> stops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readString(in);
+            String code = readString(in);
+            String name = readString(in);
+            double lat = in.getDouble();
+            double lon = in.getDouble();
+            stops.add(new Stop(id, code, name, lat, lon));
+        }
+        return stops;
+    }
+
+    private static List<Route> readRoutes(ByteBuffer in) {
+        int count = in.getInt();
+        List<Route> routes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readString(in);
+            String agencyId = readString(in);
+            String shortName = readString(in);
+            String longName = readString(in);
+            int type = in.getInt();
+            String color = readString(in);
+            String textColor = readString(in);
+            routes.add(new Route(id, agencyId, shortName, longName, type, color, textColor));
+        }
+        return routes;
+    }
+
+    private static List<Trip> readTrips(ByteBuffer in) {
+        int count = in.getInt();
+        List<Trip> trips = new ArrayList<>(count);
+        // Route, service, headsign and shape values repeat across trips: keep one instance each
+        StringDictionary values = new StringDictionary();
+        for (int i = 0; i < count; i++) {
+            String routeId = values.intern(readString(in));
+            String serviceId = values.intern(readString(in));
+            String tripId = readString(in);
+            String headsign = values.intern(readString(in));
+            String shortName = values.intern(readString(in));
+            int directionId = in.getInt();
+            String shapeId = values.intern(readString(in));
+            trips.add(new Trip(routeId, serviceId, tripId, headsign, shortName, directionId, shapeId));
+        }
+        return trips;
+    }
+
+    private static TripServiceCalendar readCalendar(ByteBuffer in) {
+        LocalDate horizonStart = LocalDate.ofEpochDay(in.getInt());
+        LocalDate horizonEnd = LocalDate.ofEpochDay(in.getInt());
+        TripServiceCalendar.Builder calendar = new TripServiceCalendar.Builder(horizonStart, horizonEnd);
+        int services = in.getInt();
+        for (int i = 0; i < services; i++) {
+            String serviceId = readString(in);
+            int dates = in.getInt();
+            for (int d = 0; d < dates; d++) {
+                calendar.addServiceDate(serviceId, LocalDate.ofEpochDay(in.getInt()));
+            }
+        }
+        return calendar.build();
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] b = new byte[length];
+        in.get(b);
+        in.position(in.position() + padding(length));
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // -------- Write --------
+
+    /**
+     * Write a snapshot to a temporary file and move it into place,
+     * removing snapshots of older feeds from the same directory.
+     */
+    public static void write(Path file, long sourceHash, List<Stop> stops, List<Route> routes, List<Trip> trips,
+                             TripServiceCalendar calendar, ZoneId timeZone,
+                             StopTimeTable stopTimes, ShapeTable shapes,
+                             StopTripMapper stopTripMapper) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "gtfs-", ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceHash);
+            writeStops(out, stops);
+            writeRoutes(out, routes);
+            writeTrips(out, trips);
+            writeCalendar(out, calendar);
+            writeString(out, timeZone.getId());
+            stopTimes.writeTo(out);
+            shapes.writeTo(out);
+            stopTripMapper.writeTo(out, trips);
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Snapshots of other feeds or versions are obsolete; a temp file may belong to
+        // another instance still writing, so only abandoned ones are removed
+        long staleBefore = System.currentTimeMillis() - STALE_TMP_MILLIS;
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(dir, "gtfs-*.{snap,tmp}")) {
+            for (Path p : old) {
+                if (p.getFileName().equals(file.getFileName())) continue;
+                try {
+                    if (p.getFileName().toString().endsWith(".tmp")
+                            && Files.getLastModifiedTime(p).toMillis() > staleBefore) {
+                        continue;
+                    }
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    // Still mapped by a running generation on some platforms; removed next time
+                }
+            }
+        }
+        System.out.println("GTFS snapshot written: " + file);
+    }
+
+    private static void writeStops(DataOutputStream out, List<Stop> stops) throws IOException {
+        out.writeInt(stops.size());
+        for (Stop s : stops) {
+            writeString(out, s.getStopId());
+            writeString(out, s.getStopCode());
+            writeString(out, s.getStopName());
+            out.writeDouble(s.getStopLat());
+            out.writeDouble(s.getStopLon());
+        }
+    }
+
+    private static void writeRoutes(DataOutputStream out, List<Route> routes) throws IOException {
+        out.writeInt(routes.size());
+        for (Route r : routes) {
+            writeString(out, r.getRouteId());
+            writeString(out, r.getAgencyId());
+            writeString(out, r.getShortName());
+            writeString(out, r.getLongName());
+            out.writeInt(r.getRouteType());
+            writeString(out, r.getColor());
+            writeString(out, r.getTextColor());
+        }
+    }
+
+    private static void writeTrips(DataOutputStream out, List<Trip> trips) throws IOException {
+        out.writeInt(trips.size());
+        for (Trip t : trips) {
+            writeString(out, t.getRouteId());
+            writeString(out, t.getServiceId());
+            writeString(out, t.getTripId());
+            writeString(out, t.getTripHeadsign());
+            writeString(out, t.getTripShortName());
+            out.writeInt(t.getDirectionId());
+            writeString(out, t.getShapeId());
+        }
+    }
+
+    private static void writeCalendar(DataOutputStream out, TripServiceCalendar calendar) throws IOException {
+        out.writeInt((int) calendar.getHorizonStart().toEpochDay());
+        out.writeInt((int) calendar.getHorizonEnd().toEpochDay());
+        out.writeInt(calendar.serviceCount());
+        for (String serviceId : calendar.getServiceIds()) {
+            writeString(out, serviceId);
+            out.writeInt(calendar.getServiceDates(serviceId).size());
+            for (LocalDate date : calendar.getServiceDates(serviceId)) {
+                out.writeInt((int) date.toEpochDay());
+            }
+        }
+    }
+
+    /**
+     * Length-prefixed UTF-8, padded to 4 bytes so int sections stay aligned (-1 = null).
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+        for (int i = 0; i < padding(b.length); i++) {
+            out.writeByte(0);
+        }
+    }
+
+    private static int padding(int length) {
+        return -length & 3;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+}
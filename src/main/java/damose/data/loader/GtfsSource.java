@@ -0,0 +1,81 @@
+package damose.data.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import damose.config.AppConstants;
+
+/**
+ * Where the static GTFS tables are read from: classpath resources,
+ * a directory, or a GTFS zip streamed without extraction.
+ * Implementations allow several tables to be read concurrently.
+ */
+public interface GtfsSource extends Closeable {
+
+    /**
+     * Open a table by file name (e.g. "stops.txt").
+     * @return the table contents, or null if the feed does not have it
+     */
+    InputStream open(String fileName) throws IOException;
+
+    /**
+     * Checksum of a table's contents (size and CRC), used to key snapshots.
+     * @return checksum, or -1 if the feed does not have the table
+     */
+    long checksum(String fileName) throws IOException;
+
+    /**
+     * Called by loaders when a table could not be read to the end, so a partial
+     * load can be told apart from a clean one. Loaders log the error themselves.
+     */
+    default void reportFailure(String fileName, Exception error) {
+        // Nobody is listening by default
+    }
+
+    @Override
+    default void close() throws IOException {
+        // Nothing to release by default
+    }
+
+    /**
+     * Tables bundled under {@link AppConstants#GTFS_RESOURCE_DIR}.
+     */
+    static GtfsSource classpath() {
+        return new ClasspathGtfsSource(AppConstants.GTFS_RESOURCE_DIR);
+    }
+
+    /**
+     * A feed directory or a GTFS zip file.
+     */
+    static GtfsSource open(Path path) throws IOException {
+        return Files.isDirectory(path) ? new DirectoryGtfsSource(path) : new ZipGtfsSource(path);
+    }
+
+    /**
+     * The feed named by the {@link AppConstants#GTFS_FEED_PROPERTY} system property,
+     * else {@link AppConstants#GTFS_FEED_PATH} if present, else the bundled resources.
+     */
+    static GtfsSource resolveDefault() {
+        Path path = defaultFeedPath();
+        if (Files.exists(path)) {
+            try {
+                return open(path);
+            } catch (IOException e) {
+                System.err.println("Could not open GTFS feed " + path + ": " + e.getMessage());
+            }
+        }
+        return classpath();
+    }
+
+    /**
+     * Feed location on disk, whether or not it exists yet.
+     */
+    static Path defaultFeedPath() {
+        return Paths.get(System.getProperty(AppConstants.GTFS_FEED_PROPERTY, AppConstants.GTFS_FEED_PATH))
+                .toAbsolutePath();
+    }
+}
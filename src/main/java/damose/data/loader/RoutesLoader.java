@@ -0,0 +1,78 @@
+package damose.data.loader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import damose.config.AppConstants;
+import damose.data.model.Route;
+
+/**
+ * Loader for GTFS routes.txt file.
+ * Colors are kept only when they are six hex digits; a missing route_type means bus.
+ */
+public final class RoutesLoader {
+
+    private RoutesLoader() {
+        // Utility class
+    }
+
+    public static List<Route> load() {
+        return load(GtfsSource.classpath());
+    }
+
+    public static List<Route> load(GtfsSource source) {
+        List<Route> routes = new ArrayList<>();
+
+        try (InputStream in = source.open(AppConstants.GTFS_ROUTES_FILE)) {
+            if (in == null) {
+                System.err.println("RoutesLoader: routes.txt not found in " + source);
+                return routes;
+            }
+
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colRoute = csv.column("route_id");
+                int colAgency = csv.column("agency_id");
+                int colShortName = csv.column("route_short_name");
+                int colLongName = csv.column("route_long_name");
+                int colType = csv.column("route_type");
+                int colColor = csv.column("route_color");
+                int colTextColor = csv.column("route_text_color");
+
+                if (colRoute < 0) {
+                    System.err.println("RoutesLoader: missing route_id column in routes.txt");
+                    return routes;
+                }
+
+                while (csv.next()) {
+                    if (csv.isEmpty(colRoute)) {
+                        System.err.println("RoutesLoader: line " + csv.lineNumber() + " ignored (no route_id)");
+                        continue;
+                    }
+
+                    routes.add(new Route(
+                            csv.getString(colRoute),
+                            csv.getCachedString(colAgency),
+                            csv.getString(colShortName),
+                            csv.getString(colLongName),
+                            csv.getInt(colType, Route.TYPE_BUS),
+                            hexColor(csv.getString(colColor)),
+                            hexColor(csv.getString(colTextColor))));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading routes.txt: " + e.getMessage());
+            e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_ROUTES_FILE, e);
+        }
+
+        System.out.println("Routes loaded: " + routes.size());
+        return routes;
+    }
+
+    private static String hexColor(String value) {
+        if (value == null) return null;
+        String hex = value.trim();
+        return hex.matches("[0-9A-Fa-f]{6}") ? hex.toUpperCase() : null;
+    }
+}
@@ -0,0 +1,63 @@
+package damose.data.loader;
+
+import java.io.InputStream;
+
+import damose.config.AppConstants;
+import damose.data.model.ShapeTable;
+
+/**
+ * Loader for GTFS shapes.txt file.
+ * Points are stored in a columnar {@link ShapeTable}; the file is optional.
+ */
+public final class ShapesLoader {
+
+    private ShapesLoader() {
+        // Utility class
+    }
+
+    public static ShapeTable load() {
+        return load(GtfsSource.classpath());
+    }
+
+    public static ShapeTable load(GtfsSource source) {
+        ShapeTable.Builder builder = new ShapeTable.Builder();
+
+        try (InputStream in = source.open(AppConstants.GTFS_SHAPES_FILE)) {
+            if (in == null) {
+                System.out.println("ShapesLoader: shapes.txt not found in " + source + ", routes follow their stops");
+                return builder.build();
+            }
+
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colShape = csv.column("shape_id");
+                int colLat = csv.column("shape_pt_lat");
+                int colLon = csv.column("shape_pt_lon");
+                int colSequence = csv.column("shape_pt_sequence");
+
+                if (colShape < 0 || colLat < 0 || colLon < 0 || colSequence < 0) {
+                    System.err.println("ShapesLoader: missing required columns in shapes.txt");
+                    return builder.build();
+                }
+
+                while (csv.next()) {
+                    if (csv.isEmpty(colShape)) continue;
+                    double lat = csv.getDouble(colLat, Double.NaN);
+                    double lon = csv.getDouble(colLon, Double.NaN);
+                    if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                        System.err.println("ShapesLoader: line " + csv.lineNumber() + " ignored (bad coordinates)");
+                        continue;
+                    }
+                    builder.add(csv.getCachedString(colShape), lat, lon, csv.getInt(colSequence, 0));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading shapes.txt: " + e.getMessage());
+            e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_SHAPES_FILE, e);
+        }
+
+        ShapeTable shapes = builder.build();
+        System.out.println("Shapes loaded: " + shapes.shapeCount() + " shapes, " + shapes.size() + " points");
+        return shapes;
+    }
+}
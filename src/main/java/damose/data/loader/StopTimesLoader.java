@@ -1,121 +1,203 @@
 package damose.data.loader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import damose.config.AppConstants;
-import damose.data.model.StopTime;
+import damose.data.model.StopTimeTable;
 
 /**
  * Loader for GTFS stop_times.txt file.
+ * Rows are stored in a columnar {@link StopTimeTable}.
  */
 public final class StopTimesLoader {
 
-    private static List<StopTime> allStopTimes = new ArrayList<>();
-    private static Map<String, List<StopTime>> stopTimesByStop = new HashMap<>();
-
     private StopTimesLoader() {
         // Utility class
     }
 
-    public static List<StopTime> load() {
-        return load(AppConstants.GTFS_STOP_TIMES_PATH);
+    public static StopTimeTable load() {
+        return load(GtfsSource.classpath());
     }
 
-    public static List<StopTime> load(String resourcePath) {
-        allStopTimes.clear();
-        stopTimesByStop.clear();
-
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(StopTimesLoader.class.getResourceAsStream(resourcePath)))) {
-
-            String line;
-            boolean firstLine = true;
+    public static StopTimeTable load(GtfsSource source) {
+        if (AppConstants.STOP_TIMES_PARALLEL_LOAD) {
+            return loadParallel(source, Runtime.getRuntime().availableProcessors());
+        }
+        return loadSequential(source);
+    }
 
-            while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue;
+    public static StopTimeTable loadSequential(GtfsSource source) {
+        StopTimeTable.Builder builder = new StopTimeTable.Builder();
+
+        try (InputStream in = source.open(AppConstants.GTFS_STOP_TIMES_FILE)) {
+            if (in == null) {
+                System.err.println("StopTimesLoader: stop_times.txt not found in " + source);
+            } else {
+                try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                    if (hasRequiredColumns(csv, source)) {
+                        readRows(csv, builder);
+                    }
                 }
-
-                String[] parts = line.split(",");
-                if (parts.length < 10) continue;
-
-                String tripId = parts[0];
-                LocalTime arrival = parseTime(parts[1]);
-                LocalTime departure = parseTime(parts[2]);
-                String stopId = parts[3];
-                int stopSequence = parseInt(parts[4]);
-                String stopHeadsign = parts[5];
-                int pickupType = parseInt(parts[6]);
-                int dropOffType = parseInt(parts[7]);
-                double shapeDistTraveled = parseDouble(parts[8]);
-                int timepoint = parseInt(parts[9]);
-
-                StopTime st = new StopTime(tripId, arrival, departure, stopId,
-                        stopSequence, stopHeadsign, pickupType, dropOffType,
-                        shapeDistTraveled, timepoint);
-
-                allStopTimes.add(st);
-                stopTimesByStop.computeIfAbsent(stopId, k -> new ArrayList<>()).add(st);
             }
 
-            System.out.println("StopTimes loaded: " + allStopTimes.size());
+            System.out.println("StopTimes loaded: " + builder.size());
 
         } catch (IOException e) {
             System.err.println("Error loading stop_times: " + e.getMessage());
             e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_STOP_TIMES_FILE, e);
         }
 
-        return allStopTimes;
+        return builder.build();
     }
 
-    public static List<StopTime> getAllStopTimes() {
-        return allStopTimes;
-    }
+    /**
+     * Load stop_times by parsing record-aligned chunks of the file in parallel.
+     * Chunks are read while earlier ones are being parsed and are merged back
+     * in file order, so the result is identical to {@link #loadSequential(GtfsSource)}.
+     */
+    public static StopTimeTable loadParallel(GtfsSource source, int parallelism) {
+        StopTimeTable.Builder builder = new StopTimeTable.Builder();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+
+        try (InputStream in = source.open(AppConstants.GTFS_STOP_TIMES_FILE)) {
+            if (in == null) {
+                System.err.println("StopTimesLoader: stop_times.txt not found in " + source);
+            } else {
+                parseChunks(in, source, pool, parallelism, builder);
+            }
+
+            System.out.println("StopTimes loaded: " + builder.size() + " (parallel)");
 
-    public static List<StopTime> getStopTimesForStop(String stopId) {
-        return stopTimesByStop.getOrDefault(stopId, new ArrayList<>());
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error loading stop_times: " + e.getMessage());
+            e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_STOP_TIMES_FILE, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("StopTimes loading interrupted");
+            source.reportFailure(AppConstants.GTFS_STOP_TIMES_FILE, e);
+        } finally {
+            pool.shutdown();
+        }
+
+        return builder.build();
     }
 
-    private static LocalTime parseTime(String s) {
-        try {
-            if (s == null || s.isEmpty()) return null;
+    /**
+     * Read the stream in blocks cut at the last record end and submit one parse task per block.
+     * Finished chunks are appended to the builder in file order as soon as the oldest
+     * completes, so at most maxInFlight blocks and partial builders are held at a time.
+     * A header without the required columns stops before any block is parsed.
+     */
+    private static void parseChunks(InputStream in, GtfsSource source, ForkJoinPool pool,
+                                    int parallelism, StopTimeTable.Builder builder)
+            throws IOException, InterruptedException, ExecutionException {
+        Deque<Future<StopTimeTable.Builder>> pending = new ArrayDeque<>();
+        int maxInFlight = Math.max(2, parallelism * 2);
+        GtfsCsvReader header = null;
+        byte[] carry = new byte[0];
+        boolean eof = false;
+
+        while (!eof) {
+            byte[] block = new byte[Math.max(AppConstants.STOP_TIMES_CHUNK_BYTES, carry.length * 2)];
+            System.arraycopy(carry, 0, block, 0, carry.length);
+            int len = carry.length + in.readNBytes(block, carry.length, block.length - carry.length);
+            eof = len < block.length;
+
+            int end = eof ? len : lastRecordEnd(block, len) + 1;
+            if (end == 0) {
+                // A single record longer than the block: retry with a bigger one
+                carry = block;
+                continue;
+            }
+            carry = Arrays.copyOfRange(block, end, len);
 
-            String[] parts = s.split(":");
-            int h = Integer.parseInt(parts[0]);
-            int m = Integer.parseInt(parts[1]);
-            int sec = Integer.parseInt(parts[2]);
+            int from = 0;
+            if (header == null) {
+                header = new GtfsCsvReader(block, 0, end);
+                if (!hasRequiredColumns(header, source)) return;
+                from = header.position();
+            }
 
-            // GTFS allows hours > 24, normalize
-            h = h % 24;
+            if (pending.size() >= maxInFlight) {
+                builder.append(pending.poll().get());
+            }
+            GtfsCsvReader csv = header.withData(block, from, end);
+            pending.add(pool.submit(() -> {
+                StopTimeTable.Builder part = new StopTimeTable.Builder(1 << 14);
+                readRows(csv, part);
+                return part;
+            }));
+        }
+        while (!pending.isEmpty()) {
+            builder.append(pending.poll().get());
+        }
+    }
 
-            return LocalTime.of(h, m, sec);
-        } catch (Exception e) {
-            return null;
+    /**
+     * Last newline outside quotes, as {@link GtfsCsvReader} ends records; the block
+     * starts at a record boundary, so the quote state is known from its first byte.
+     */
+    private static int lastRecordEnd(byte[] data, int len) {
+        int last = -1;
+        boolean inQuotes = false;
+        for (int i = 0; i < len; i++) {
+            byte c = data[i];
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == '\n' && !inQuotes) {
+                last = i;
+            }
         }
+        return last;
     }
 
-    private static int parseInt(String s) {
-        try {
-            return (s == null || s.isEmpty()) ? 0 : Integer.parseInt(s);
-        } catch (Exception e) {
-            return 0;
+    /**
+     * Whether the header has the columns every row needs; if not, the failure is
+     * reported on the source.
+     */
+    private static boolean hasRequiredColumns(GtfsCsvReader header, GtfsSource source) {
+        if (header.column("trip_id") >= 0 && header.column("stop_id") >= 0
+                && header.column("stop_sequence") >= 0) {
+            return true;
         }
+        System.err.println("StopTimesLoader: missing required columns in stop_times.txt");
+        source.reportFailure(AppConstants.GTFS_STOP_TIMES_FILE,
+                new IOException("stop_times.txt needs trip_id, stop_id and stop_sequence"));
+        return false;
     }
 
-    private static double parseDouble(String s) {
-        try {
-            return (s == null || s.isEmpty()) ? 0.0 : Double.parseDouble(s);
-        } catch (Exception e) {
-            return 0.0;
+    /**
+     * Append every row of a stop_times reader to the builder; the reader must have
+     * the required columns, see {@link #hasRequiredColumns}.
+     * Times are seconds since the service day start (hours past 24 kept as-is).
+     */
+    static void readRows(GtfsCsvReader csv, StopTimeTable.Builder builder) throws IOException {
+        int colTrip = csv.column("trip_id");
+        int colArrival = csv.column("arrival_time");
+        int colDeparture = csv.column("departure_time");
+        int colStop = csv.column("stop_id");
+        int colSequence = csv.column("stop_sequence");
+        int colHeadsign = csv.column("stop_headsign");
+
+        while (csv.next()) {
+            if (csv.isEmpty(colTrip) || csv.isEmpty(colStop)) continue;
+
+            builder.add(
+                    csv.getCachedString(colTrip),
+                    csv.getCachedString(colStop),
+                    csv.getTimeSeconds(colArrival),
+                    csv.getTimeSeconds(colDeparture),
+                    csv.getInt(colSequence, 0),
+                    csv.getCachedString(colHeadsign));
         }
     }
 }
-
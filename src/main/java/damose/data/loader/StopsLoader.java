@@ -1,8 +1,6 @@
 package damose.data.loader;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,45 +17,49 @@ public final class StopsLoader {
     }
 
     public static List<Stop> load() {
-        return load(AppConstants.GTFS_STOPS_PATH);
+        return load(GtfsSource.classpath());
     }
 
-    public static List<Stop> load(String resourcePath) {
+    public static List<Stop> load(GtfsSource source) {
         List<Stop> stops = new ArrayList<>();
 
-        try (InputStream in = StopsLoader.class.getResourceAsStream(resourcePath);
-             BufferedReader br = new BufferedReader(new InputStreamReader(in))) {
-
-            // Skip header
-            br.readLine();
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                List<String> fields = CsvParser.parseLine(line);
+        try (InputStream in = source.open(AppConstants.GTFS_STOPS_FILE)) {
+            if (in == null) {
+                System.err.println("StopsLoader: stops.txt not found in " + source);
+                return stops;
+            }
 
-                if (fields.size() < 6) continue;
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colId = csv.column("stop_id");
+                int colCode = csv.column("stop_code");
+                int colName = csv.column("stop_name");
+                int colLat = csv.column("stop_lat");
+                int colLon = csv.column("stop_lon");
 
-                String stopId = fields.get(0).trim();
-                String stopCode = fields.get(1).trim();
-                String stopName = fields.get(2).trim();
-                String latStr = fields.get(4).trim();
-                String lonStr = fields.get(5).trim();
+                if (colId < 0 || colLat < 0 || colLon < 0) {
+                    System.err.println("StopsLoader: missing required columns in stops.txt");
+                    return stops;
+                }
 
-                if (latStr.isEmpty() || lonStr.isEmpty()) continue;
+                while (csv.next()) {
+                    if (csv.isEmpty(colId) || csv.isEmpty(colLat) || csv.isEmpty(colLon)) continue;
 
-                double lat = Double.parseDouble(latStr);
-                double lon = Double.parseDouble(lonStr);
+                    double lat = csv.getDouble(colLat, Double.NaN);
+                    double lon = csv.getDouble(colLon, Double.NaN);
+                    if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
 
-                stops.add(new Stop(stopId, stopCode, stopName, lat, lon));
+                    stops.add(new Stop(csv.getString(colId), csv.getString(colCode),
+                            csv.getString(colName), lat, lon));
+                }
             }
 
         } catch (Exception e) {
             System.err.println("Error loading stops: " + e.getMessage());
             e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_STOPS_FILE, e);
         }
 
         System.out.println("Stops loaded: " + stops.size());
         return stops;
     }
 }
-
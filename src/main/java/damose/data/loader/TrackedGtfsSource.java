@@ -0,0 +1,54 @@
+package damose.data.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Wraps a source and remembers which tables loaders reported as failed,
+ * so callers can tell whether a load is complete.
+ */
+public final class TrackedGtfsSource implements GtfsSource {
+
+    private final GtfsSource delegate;
+    private final Set<String> failed = new ConcurrentSkipListSet<>();
+
+    public TrackedGtfsSource(GtfsSource delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public InputStream open(String fileName) throws IOException {
+        return delegate.open(fileName);
+    }
+
+    @Override
+    public long checksum(String fileName) throws IOException {
+        return delegate.checksum(fileName);
+    }
+
+    @Override
+    public void reportFailure(String fileName, Exception error) {
+        failed.add(fileName);
+        delegate.reportFailure(fileName, error);
+    }
+
+    /**
+     * Tables reported as not read to the end, empty if every load was clean.
+     */
+    public Set<String> getFailedTables() {
+        return new TreeSet<>(failed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -1,13 +1,11 @@
 package damose.data.loader;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 import damose.config.AppConstants;
+import damose.data.model.StringDictionary;
 import damose.data.model.Trip;
 
 /**
@@ -21,78 +19,58 @@ public final class TripsLoader {
     }
 
     public static List<Trip> load() {
-        return load(AppConstants.GTFS_TRIPS_PATH);
+        return load(GtfsSource.classpath());
     }
 
-    public static List<Trip> load(String resourcePath) {
+    public static List<Trip> load(GtfsSource source) {
         List<Trip> trips = new ArrayList<>();
 
-        try (InputStream in = TripsLoader.class.getResourceAsStream(resourcePath)) {
+        try (InputStream in = source.open(AppConstants.GTFS_TRIPS_FILE)) {
             if (in == null) {
-                System.err.println("TripsLoader: resource not found: " + resourcePath);
+                System.err.println("TripsLoader: trips.txt not found in " + source);
                 return trips;
             }
 
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-                String line = br.readLine();
-                if (line == null) return trips;
-
-                // Check if first line is header
-                boolean headerConsumed = line.toLowerCase().startsWith("route_id") 
-                        || line.toLowerCase().startsWith("service_id") 
-                        || line.toLowerCase().contains("trip_id");
-                
-                if (!headerConsumed) {
-                    processLine(line, trips);
+            try (GtfsCsvReader csv = new GtfsCsvReader(in)) {
+                int colRoute = csv.column("route_id");
+                int colService = csv.column("service_id");
+                int colTrip = csv.column("trip_id");
+                int colHeadsign = csv.column("trip_headsign");
+                int colShortName = csv.column("trip_short_name");
+                int colDirection = csv.column("direction_id");
+                int colShape = csv.column("shape_id");
+
+                if (colRoute < 0 || colService < 0 || colTrip < 0) {
+                    System.err.println("TripsLoader: missing required columns in trips.txt");
+                    return trips;
                 }
 
-                while ((line = br.readLine()) != null) {
-                    processLine(line, trips);
+                // Route, service, headsign and shape values repeat across trips: keep one instance each
+                StringDictionary values = new StringDictionary();
+
+                while (csv.next()) {
+                    if (csv.isEmpty(colTrip)) {
+                        System.err.println("TripsLoader: line " + csv.lineNumber() + " ignored (no trip_id)");
+                        continue;
+                    }
+
+                    trips.add(new Trip(
+                            values.intern(csv.getCachedString(colRoute)),
+                            values.intern(csv.getCachedString(colService)),
+                            csv.getString(colTrip),
+                            values.intern(csv.getCachedString(colHeadsign)),
+                            values.intern(csv.getCachedString(colShortName)),
+                            csv.getInt(colDirection, 0),
+                            values.intern(csv.getCachedString(colShape))));
                 }
             }
         } catch (Exception e) {
             System.err.println("Error loading trips.txt: " + e.getMessage());
             e.printStackTrace();
+            source.reportFailure(AppConstants.GTFS_TRIPS_FILE, e);
         }
 
         System.out.println("Trips loaded: " + trips.size());
         return trips;
     }
-
-    private static void processLine(String line, List<Trip> trips) {
-        if (line == null || line.trim().isEmpty()) return;
-
-        List<String> fields = CsvParser.parseLine(line);
-        
-        // trips.txt: route_id,service_id,trip_id,trip_headsign,trip_short_name,direction_id,block_id,shape_id
-        if (fields.size() < 3) return;
-
-        try {
-            String routeId = safeGet(fields, 0).trim();
-            String serviceId = safeGet(fields, 1).trim();
-            String tripId = safeGet(fields, 2).trim();
-            String tripHeadsign = safeGet(fields, 3).replace("\"", "").trim();
-            String tripShortName = safeGet(fields, 4).trim();
-
-            int directionId = 0;
-            String dirField = safeGet(fields, 5).trim();
-            if (!dirField.isEmpty()) {
-                try {
-                    directionId = Integer.parseInt(dirField);
-                } catch (NumberFormatException ignored) {
-                }
-            }
-
-            String shapeId = safeGet(fields, 7).trim();
-
-            trips.add(new Trip(routeId, serviceId, tripId, tripHeadsign, tripShortName, directionId, shapeId));
-        } catch (Exception ex) {
-            System.err.println("TripsLoader: row ignored due to parsing error: " + ex.getMessage());
-        }
-    }
-
-    private static String safeGet(List<String> list, int idx) {
-        return idx < list.size() ? list.get(idx) : "";
-    }
 }
-
@@ -0,0 +1,71 @@
+package damose.data.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * GTFS tables streamed straight out of a feed zip, without extracting it.
+ * Tables may sit at the root of the archive or in a single subfolder.
+ */
+public final class ZipGtfsSource implements GtfsSource {
+
+    private final Path path;
+    private final ZipFile zip;
+    private final Map<String, ZipEntry> entries = new HashMap<>();
+
+    public ZipGtfsSource(Path path) throws IOException {
+        this.path = path;
+        this.zip = new ZipFile(path.toFile());
+
+        Enumeration<? extends ZipEntry> all = zip.entries();
+        while (all.hasMoreElements()) {
+            ZipEntry entry = all.nextElement();
+            if (entry.isDirectory()) continue;
+            String name = entry.getName();
+            String fileName = name.substring(name.lastIndexOf('/') + 1);
+            // Prefer entries at the root over nested ones
+            ZipEntry previous = entries.get(fileName);
+            if (previous == null || name.length() < previous.getName().length()) {
+                entries.put(fileName, entry);
+            }
+        }
+    }
+
+    /**
+     * ZipFile is safe to read from several threads, one stream per entry.
+     */
+    @Override
+    public InputStream open(String fileName) throws IOException {
+        ZipEntry entry = entries.get(fileName);
+        return entry != null ? zip.getInputStream(entry) : null;
+    }
+
+    /**
+     * Read from the archive directory; no entry is decompressed.
+     */
+    @Override
+    public long checksum(String fileName) {
+        ZipEntry entry = entries.get(fileName);
+        return entry != null ? checksum(entry.getSize(), entry.getCrc()) : -1;
+    }
+
+    static long checksum(long size, long crc) {
+        return (size << 32) ^ crc;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package damose.data.mapper;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+import damose.data.model.TripServiceCalendar;
+
+/**
+ * Trips running on a service date, as a bitmap over the stop times trip ids.
+ * Each trip's service is resolved to its calendar id once; the bitmap of a date is
+ * built on first request from the services active that day and then reused,
+ * so filtering rows by service day is one bit test.
+ */
+public class ActiveTripIndex {
+
+    // Trips without a service_id run every day
+    private static final int EVERY_DAY = -2;
+
+    // Bitmaps are requested for a handful of dates around today
+    private static final int MAX_CACHED_DATES = 8;
+
+    private final TripServiceCalendar calendar;
+    private final int[] tripServices;
+    private final Map<LocalDate, BitSet> activeByDate = new ConcurrentHashMap<>();
+
+    public ActiveTripIndex(TripServiceCalendar calendar, StopTripMapper mapper) {
+        this.calendar = calendar;
+
+        StopTimeTable stopTimes = mapper.getStopTimes();
+        this.tripServices = new int[stopTimes.tripCount()];
+        for (int t = 0; t < tripServices.length; t++) {
+            Trip trip = mapper.getTrip(t);
+            if (trip == null) {
+                tripServices[t] = TripServiceCalendar.NONE;
+                continue;
+            }
+            String serviceId = trip.getServiceId();
+            tripServices[t] = (serviceId == null || serviceId.isEmpty())
+                    ? EVERY_DAY
+                    : calendar.indexOfService(serviceId);
+        }
+    }
+
+    /**
+     * Trips running on a date, indexed by stop times trip id. Shared: do not modify.
+     */
+    public BitSet activeTrips(LocalDate date) {
+        BitSet active = activeByDate.get(date);
+        if (active != null) return active;
+
+        BitSet services = calendar.activeServices(date);
+        active = new BitSet(tripServices.length);
+        for (int t = 0; t < tripServices.length; t++) {
+            int s = tripServices[t];
+            if (s == EVERY_DAY || (s != TripServiceCalendar.NONE && services.get(s))) {
+                active.set(t);
+            }
+        }
+
+        if (activeByDate.size() >= MAX_CACHED_DATES) activeByDate.clear();
+        activeByDate.put(date, active);
+        return active;
+    }
+
+    public boolean isActive(int tripIdx, LocalDate date) {
+        return activeTrips(date).get(tripIdx);
+    }
+}
@@ -0,0 +1,141 @@
+package damose.data.mapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import damose.data.model.Departure;
+import damose.data.model.ServiceDayClock;
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+
+/**
+ * Scheduled departures at a stop within a time window.
+ * Stop times of a stop are kept ordered by arrival seconds in the stop times table,
+ * so each service day overlapping the window costs one binary search plus a scan
+ * of the rows actually inside it.
+ */
+public class DepartureIndex {
+
+    private final StopTimeTable stopTimes;
+    private final StopTripMapper mapper;
+    private final ActiveTripIndex activeTrips;
+    private final ServiceDayClock clock;
+
+    public DepartureIndex(StopTimeTable stopTimes, StopTripMapper mapper,
+                          ActiveTripIndex activeTrips, ServiceDayClock clock) {
+        this.stopTimes = stopTimes;
+        this.mapper = mapper;
+        this.activeTrips = activeTrips;
+        this.clock = clock;
+    }
+
+    /**
+     * Departures of running trips scheduled between {@code fromEpoch} and {@code toEpoch}
+     * (inclusive), ordered by time.
+     * @param routeId only trips of this route (case-insensitive), or null for all
+     */
+    public List<Departure> departures(String stopId, long fromEpoch, long toEpoch, String routeId) {
+        return departures(stopId, window(fromEpoch, toEpoch), routeId);
+    }
+
+    /**
+     * Resolve the service days of a time window once, for querying many stops.
+     */
+    public Window window(long fromEpoch, long toEpoch) {
+        return new Window(fromEpoch, toEpoch);
+    }
+
+    /**
+     * Departures of running trips scheduled in a window, ordered by time.
+     * @param routeId only trips of this route (case-insensitive), or null for all
+     */
+    public List<Departure> departures(String stopId, Window window, String routeId) {
+        int stopIdx = stopTimes.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE || window.days.isEmpty()) return Collections.emptyList();
+
+        List<Departure> result = new ArrayList<>();
+        for (int d = 0; d < window.days.size(); d++) {
+            collect(stopIdx, window.days.get(d), window.dayStarts[d], window.actives.get(d),
+                    window.fromSeconds[d], window.toSeconds[d], routeId, result);
+        }
+
+        // Each service day is already in order
+        result.sort(Comparator.comparingLong(Departure::getScheduledEpoch));
+        return result;
+    }
+
+    /**
+     * All departures of running trips on one service day, ordered by time
+     * (trips past midnight at the end).
+     * @param routeId only trips of this route (case-insensitive), or null for all
+     */
+    public List<Departure> departuresOn(String stopId, LocalDate serviceDate, String routeId) {
+        int stopIdx = stopTimes.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE) return Collections.emptyList();
+
+        List<Departure> result = new ArrayList<>();
+        collect(stopIdx, serviceDate, clock.dayStart(serviceDate), activeTrips.activeTrips(serviceDate),
+                0, Integer.MAX_VALUE, routeId, result);
+        return result;
+    }
+
+    private void collect(int stopIdx, LocalDate day, long dayStart, BitSet active, int fromSeconds, int toSeconds,
+                         String routeId, List<Departure> out) {
+        int end = stopTimes.stopRowsEnd(stopIdx);
+        for (int pos = stopTimes.findStopRow(stopIdx, fromSeconds); pos < end; pos++) {
+            int row = stopTimes.stopRowAt(pos);
+            int arrival = stopTimes.getArrivalSeconds(row);
+            // Rows without a time come last
+            if (arrival == StopTimeTable.NONE || arrival > toSeconds) break;
+
+            int tripIdx = stopTimes.getTripIndex(row);
+            if (!active.get(tripIdx)) continue;
+            Trip trip = mapper.getTrip(tripIdx);
+            if (trip == null) continue;
+            if (routeId != null && !routeId.equalsIgnoreCase(trip.getRouteId())) continue;
+
+            out.add(new Departure(row, trip, day, arrival, dayStart + arrival));
+        }
+    }
+
+    /**
+     * Service days overlapping a time window, with their start, the window in seconds
+     * of each day and the trips running on it.
+     */
+    public final class Window {
+        private final List<LocalDate> days = new ArrayList<>();
+        private final List<BitSet> actives = new ArrayList<>();
+        private final long[] dayStarts;
+        private final int[] fromSeconds;
+        private final int[] toSeconds;
+
+        private Window(long fromEpoch, long toEpoch) {
+            List<long[]> bounds = new ArrayList<>();
+            if (fromEpoch <= toEpoch) {
+                // Trips of the previous service day may run past midnight into the window
+                LocalDate last = clock.dateOf(toEpoch);
+                for (LocalDate day = clock.dateOf(fromEpoch).minusDays(1); !day.isAfter(last); day = day.plusDays(1)) {
+                    long dayStart = clock.dayStart(day);
+                    long from = Math.max(0, fromEpoch - dayStart);
+                    long to = toEpoch - dayStart;
+                    if (to < 0 || from > Integer.MAX_VALUE) continue;
+                    days.add(day);
+                    actives.add(activeTrips.activeTrips(day));
+                    bounds.add(new long[] { dayStart, from, Math.min(to, Integer.MAX_VALUE) });
+                }
+            }
+            this.dayStarts = new long[days.size()];
+            this.fromSeconds = new int[days.size()];
+            this.toSeconds = new int[days.size()];
+            for (int d = 0; d < days.size(); d++) {
+                dayStarts[d] = bounds.get(d)[0];
+                fromSeconds[d] = (int) bounds.get(d)[1];
+                toSeconds[d] = (int) bounds.get(d)[2];
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package damose.data.mapper;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import damose.data.model.Line;
+import damose.data.model.PackedLongs;
+import damose.data.model.Trip;
+
+/**
+ * Search index over the lines (route and headsign) of the route catalog.
+ * Route id, headsign and short names of every line are normalized once
+ * (lowercase, no accents, words split on punctuation) and each word's 1-, 2- and 3-grams
+ * are mapped to the lines containing them. A query word is looked up directly
+ * or by intersecting its trigrams, so a keystroke never scans the trips.
+ */
+public class LineSearchIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    // Ranks, best first
+    private static final int RANK_ROUTE_EXACT = 0;
+    private static final int RANK_ROUTE_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+    private static final int RANK_SUBSTRING = 3;
+
+    private final List<Line> lines;
+    private final List<List<Trip>> tripsByLine;
+    private final String[] routeKeys;
+    // Normalized route id, headsign and short names, space separated
+    private final String[] texts;
+    // Gram -> ascending line ids
+    private final Map<String, int[]> linesByGram = new HashMap<>();
+
+    /**
+     * @param tripsByLine lines in the order to list them, with their trips
+     */
+    public LineSearchIndex(Map<Line, List<Trip>> tripsByLine) {
+        int n = tripsByLine.size();
+        List<Line> lineList = new ArrayList<>(n);
+        List<List<Trip>> tripLists = new ArrayList<>(n);
+        this.routeKeys = new String[n];
+        this.texts = new String[n];
+
+        Map<String, List<Integer>> postings = new HashMap<>();
+        int line = 0;
+        for (Map.Entry<Line, List<Trip>> e : tripsByLine.entrySet()) {
+            String routeId = e.getKey().getRouteId();
+            String headsign = e.getKey().getHeadsign();
+            List<Trip> lineTrips = e.getValue();
+            lineList.add(e.getKey());
+            tripLists.add(Collections.unmodifiableList(lineTrips));
+
+            Set<String> fields = new LinkedHashSet<>();
+            fields.add(normalize(routeId));
+            fields.add(normalize(headsign));
+            for (Trip t : lineTrips) {
+                fields.add(normalize(t.getTripShortName()));
+            }
+            fields.remove("");
+            routeKeys[line] = normalize(routeId);
+            texts[line] = String.join(" ", fields);
+
+            for (String word : texts[line].split(" ")) {
+                for (int len = 1; len <= MAX_GRAM; len++) {
+                    for (int i = 0; i + len <= word.length(); i++) {
+                        List<Integer> ids = postings.computeIfAbsent(word.substring(i, i + len),
+                                k -> new ArrayList<>());
+                        if (ids.isEmpty() || ids.get(ids.size() - 1) != line) ids.add(line);
+                    }
+                }
+            }
+            line++;
+        }
+
+        postings.forEach((gram, ids) ->
+                linesByGram.put(gram, ids.stream().mapToInt(Integer::intValue).toArray()));
+        this.lines = Collections.unmodifiableList(lineList);
+        this.tripsByLine = Collections.unmodifiableList(tripLists);
+
+        System.out.println("LineSearchIndex initialized: lines=" + n + " grams=" + linesByGram.size());
+    }
+
+    /**
+     * All lines in catalog order.
+     */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Lines matching every word of the query, best first: exact route id, route id prefix,
+     * word prefix, then any substring; ties go to the line with more trips.
+     * An empty query matches all lines in catalog order.
+     */
+    public List<Line> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return lines.subList(0, Math.min(limit, lines.size()));
+        }
+        String[] words = q.split(" ");
+        int[] candidates = candidates(words);
+
+        // Sorted by rank, then more trips (24 bits, capped), then catalog order
+        long[] keys = new long[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            int line = candidates[i];
+            int trips = Math.min(lines.get(line).getTripCount(), 0xFF_FFFF);
+            keys[i] = PackedLongs.pack(rank(line, q, words) << 24 | (0xFF_FFFF - trips), line);
+        }
+        Arrays.sort(keys);
+
+        int count = Math.min(limit, keys.length);
+        List<Line> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(lines.get(PackedLongs.value(keys[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Trips whose route id, headsign or short name contains the query (case-insensitive).
+     * Only trips of the lines found by the index are checked.
+     */
+    public List<Trip> searchTrips(String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        List<Trip> result = new ArrayList<>();
+        for (int line : candidates(query)) {
+            for (Trip t : tripsByLine.get(line)) {
+                if (contains(t.getRouteId(), q) || contains(t.getTripHeadsign(), q)
+                        || contains(t.getTripShortName(), q)) {
+                    result.add(t);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ids of the lines whose text contains every word of the normalized query, ascending.
+     */
+    private int[] candidates(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            int[] all = new int[lines.size()];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+        return candidates(q.split(" "));
+    }
+
+    private int[] candidates(String[] words) {
+        int[] result = null;
+        for (String word : words) {
+            result = result == null ? linesWith(word) : intersect(result, linesWith(word));
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    /**
+     * Lines containing the word: a direct gram lookup for short words,
+     * otherwise its trigrams intersected and verified.
+     */
+    private int[] linesWith(String word) {
+        if (word.length() <= MAX_GRAM) {
+            return linesByGram.getOrDefault(word, new int[0]);
+        }
+        int[] ids = null;
+        for (int i = 0; i + MAX_GRAM <= word.length(); i++) {
+            int[] gram = linesByGram.get(word.substring(i, i + MAX_GRAM));
+            if (gram == null) return new int[0];
+            ids = ids == null ? gram : intersect(ids, gram);
+        }
+        int n = 0;
+        int[] verified = new int[ids.length];
+        for (int line : ids) {
+            if (texts[line].contains(word)) verified[n++] = line;
+        }
+        return Arrays.copyOf(verified, n);
+    }
+
+    private int rank(int line, String query, String[] words) {
+        String route = routeKeys[line];
+        if (route.equals(query)) return RANK_ROUTE_EXACT;
+        if (route.startsWith(query)) return RANK_ROUTE_PREFIX;
+        for (String word : words) {
+            if (!startsWord(texts[line], word)) return RANK_SUBSTRING;
+        }
+        return RANK_WORD_PREFIX;
+    }
+
+    private static boolean contains(String field, String query) {
+        return field != null && field.toLowerCase(Locale.ROOT).contains(query);
+    }
+
+    private static boolean startsWord(String text, String word) {
+        for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i + 1)) {
+            if (i == 0 || text.charAt(i - 1) == ' ') return true;
+        }
+        return false;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Lowercase, strip accents and collapse anything but letters and digits into single spaces.
+     */
+    static String normalize(String value) {
+        if (value == null || value.isEmpty()) return "";
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') sb.setLength(end - 1);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package damose.data.mapper;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import damose.data.model.Stop;
+
+/**
+ * Stops grouped into square cells of world pixels, precomputed for each zoom level
+ * from {@code minZoom} up. Clusters of a level are sorted by (row, column), so the
+ * ones in a viewport are found with one binary search per visible row.
+ * Stops are placed by a {@link Projection} supplied by the map, so clusters can be
+ * built off the EDT.
+ */
+public class StopClusters {
+
+    /**
+     * Receives the clusters in a viewport.
+     * {@code stop} is the only stop of a cluster of one, null otherwise.
+     */
+    public interface Visitor {
+        void visit(double worldX, double worldY, int count, Stop stop);
+    }
+
+    /**
+     * World pixel of a position at a zoom level; must be safe to call from any thread.
+     */
+    public interface Projection {
+        Point2D toWorldPixel(double lat, double lon, int zoom);
+    }
+
+    private final int minZoom;
+    private final int cellPx;
+    private final Level[] levels;
+
+    public StopClusters(List<Stop> stops, Projection projection, int minZoom, int maxZoom, int cellPx) {
+        this.minZoom = minZoom;
+        this.cellPx = cellPx;
+        this.levels = new Level[Math.max(0, maxZoom - minZoom + 1)];
+        for (int z = minZoom; z <= maxZoom; z++) {
+            levels[z - minZoom] = new Level(stops, projection, z);
+        }
+    }
+
+    /**
+     * Whether stops are clustered at this zoom.
+     */
+    public boolean covers(int zoom) {
+        return zoom >= minZoom && zoom - minZoom < levels.length;
+    }
+
+    /**
+     * Visit the clusters whose center is in the viewport widened by {@code marginPx}.
+     */
+    public void forEachInView(int zoom, Rectangle2D viewport, int marginPx, Visitor visitor) {
+        if (!covers(zoom)) return;
+        Level level = levels[zoom - minZoom];
+
+        long r0 = Math.max(0, (long) Math.floor((viewport.getMinY() - marginPx) / cellPx));
+        long r1 = (long) Math.floor((viewport.getMaxY() + marginPx) / cellPx);
+        long c0 = Math.max(0, (long) Math.floor((viewport.getMinX() - marginPx) / cellPx));
+        long c1 = (long) Math.floor((viewport.getMaxX() + marginPx) / cellPx);
+
+        for (long row = r0; row <= r1; row++) {
+            int i = lowerBound(level.keys, (row << 32) | c0);
+            long last = (row << 32) | c1;
+            for (; i < level.keys.length && level.keys[i] <= last; i++) {
+                visitor.visit(level.xs[i], level.ys[i], level.counts[i], level.singles[i]);
+            }
+        }
+    }
+
+    private static int lowerBound(long[] keys, long key) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Clusters of one zoom level: cell key (row << 32 | column), centroid and size.
+     */
+    private final class Level {
+        final long[] keys;
+        final double[] xs;
+        final double[] ys;
+        final int[] counts;
+        final Stop[] singles;
+
+        Level(List<Stop> stops, Projection projection, int zoom) {
+            Map<Long, Integer> clusterOf = new HashMap<>();
+            int n = 0;
+            long[] cellKeys = new long[stops.size()];
+            double[] sumX = new double[stops.size()];
+            double[] sumY = new double[stops.size()];
+            int[] sizes = new int[stops.size()];
+            Stop[] firsts = new Stop[stops.size()];
+
+            for (Stop stop : stops) {
+                Point2D pt = projection.toWorldPixel(stop.getStopLat(), stop.getStopLon(), zoom);
+                long key = ((long) Math.floor(pt.getY() / cellPx) << 32) | (long) Math.floor(pt.getX() / cellPx);
+                Integer c = clusterOf.get(key);
+                if (c == null) {
+                    c = n++;
+                    clusterOf.put(key, c);
+                    cellKeys[c] = key;
+                    firsts[c] = stop;
+                }
+                sumX[c] += pt.getX();
+                sumY[c] += pt.getY();
+                sizes[c]++;
+            }
+
+            // Order clusters by cell
+            long[] sorted = Arrays.copyOf(cellKeys, n);
+            Arrays.sort(sorted);
+            this.keys = sorted;
+            this.xs = new double[n];
+            this.ys = new double[n];
+            this.counts = new int[n];
+            this.singles = new Stop[n];
+            for (int i = 0; i < n; i++) {
+                int c = clusterOf.get(sorted[i]);
+                counts[i] = sizes[c];
+                xs[i] = sumX[c] / sizes[c];
+                ys[i] = sumY[c] / sizes[c];
+                singles[i] = sizes[c] == 1 ? firsts[c] : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package damose.data.mapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import damose.data.model.PackedLongs;
+import damose.data.model.StopRoute;
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+
+/**
+ * Routes serving each stop, by direction and headsign.
+ * Every trip is assigned a dense line id (route, direction, headsign) once; the
+ * distinct lines of each stop are then stored in a flat array with their trip counts,
+ * most served first. Counts for one service day are taken from the active trips
+ * of that day over the stop's rows.
+ */
+public class StopRouteIndex {
+
+    private final StopTimeTable stopTimes;
+    private final ActiveTripIndex activeTrips;
+
+    // Stop times trip id -> line id, or NONE if not in trips.txt
+    private final int[] tripLines;
+    private final String[] lineRoutes;
+    private final int[] lineDirections;
+    private final String[] lineHeadsigns;
+
+    // Lines of stop s are entries[stopOffsets[s] .. stopOffsets[s + 1])
+    private final int[] stopOffsets;
+    private final int[] entryLines;
+    private final StopRoute[] entries;
+
+    public StopRouteIndex(StopTimeTable stopTimes, StopTripMapper mapper, ActiveTripIndex activeTrips) {
+        this.stopTimes = stopTimes;
+        this.activeTrips = activeTrips;
+
+        Map<List<Object>, Integer> lineIds = new HashMap<>();
+        List<Trip> lineTrips = new ArrayList<>();
+        this.tripLines = new int[stopTimes.tripCount()];
+        for (int t = 0; t < tripLines.length; t++) {
+            Trip trip = mapper.getTrip(t);
+            if (trip == null) {
+                tripLines[t] = StopTimeTable.NONE;
+                continue;
+            }
+            List<Object> key = Arrays.asList(trip.getRouteId(), trip.getDirectionId(), trip.getTripHeadsign());
+            Integer line = lineIds.get(key);
+            if (line == null) {
+                line = lineTrips.size();
+                lineIds.put(key, line);
+                lineTrips.add(trip);
+            }
+            tripLines[t] = line;
+        }
+
+        int lineCount = lineTrips.size();
+        this.lineRoutes = new String[lineCount];
+        this.lineDirections = new int[lineCount];
+        this.lineHeadsigns = new String[lineCount];
+        for (int l = 0; l < lineCount; l++) {
+            Trip trip = lineTrips.get(l);
+            lineRoutes[l] = trip.getRouteId();
+            lineDirections[l] = trip.getDirectionId();
+            lineHeadsigns[l] = trip.getTripHeadsign();
+        }
+
+        int stopCount = stopTimes.stopCount();
+        this.stopOffsets = new int[stopCount + 1];
+        List<StopRoute> allEntries = new ArrayList<>();
+        int[] allLines = new int[64];
+        int[] counts = new int[lineCount];
+        for (int s = 0; s < stopCount; s++) {
+            for (long key : count(s, null, counts)) {
+                int line = lineOf(key);
+                if (allEntries.size() == allLines.length) allLines = Arrays.copyOf(allLines, allLines.length * 2);
+                allLines[allEntries.size()] = line;
+                allEntries.add(toStopRoute(line, key));
+            }
+            stopOffsets[s + 1] = allEntries.size();
+        }
+        this.entries = allEntries.toArray(new StopRoute[0]);
+        this.entryLines = Arrays.copyOf(allLines, entries.length);
+
+        System.out.println("StopRouteIndex initialized: lines=" + lineCount + " entries=" + entries.length);
+    }
+
+    /**
+     * Routes serving a stop with their trips in the whole feed, most served first.
+     */
+    public List<StopRoute> getRoutes(String stopId) {
+        int stopIdx = stopTimes.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE) return Collections.emptyList();
+        return Collections.unmodifiableList(
+                Arrays.asList(entries).subList(stopOffsets[stopIdx], stopOffsets[stopIdx + 1]));
+    }
+
+    /**
+     * Routes serving a stop on a service day with their trips that day, most served first.
+     */
+    public List<StopRoute> getRoutes(String stopId, LocalDate serviceDate) {
+        int stopIdx = stopTimes.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE) return Collections.emptyList();
+        long[] keys = count(stopIdx, activeTrips.activeTrips(serviceDate), new int[lineRoutes.length]);
+        List<StopRoute> result = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            result.add(toStopRoute(lineOf(key), key));
+        }
+        return result;
+    }
+
+    /**
+     * Distinct ids of the routes serving a stop, most served first.
+     */
+    public List<String> getRouteIds(String stopId) {
+        Set<String> routeIds = new LinkedHashSet<>();
+        for (StopRoute r : getRoutes(stopId)) {
+            routeIds.add(r.getRouteId());
+        }
+        return new ArrayList<>(routeIds);
+    }
+
+    /**
+     * Count the distinct trips of each line at a stop, only trips in {@code active} if not null.
+     * Results are (MAX_VALUE - trips, line) packed longs, so most trips come first, then
+     * feed order. {@code counts} is indexed by line id and left zeroed.
+     */
+    private long[] count(int stopIdx, BitSet active, int[] counts) {
+        int from = stopTimes.stopRowsStart(stopIdx);
+        int n = stopTimes.stopRowsEnd(stopIdx) - from;
+        int[] trips = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int tripIdx = stopTimes.getTripIndex(stopTimes.stopRowAt(from + i));
+            if (tripLines[tripIdx] == StopTimeTable.NONE) continue;
+            if (active != null && !active.get(tripIdx)) continue;
+            trips[k++] = tripIdx;
+        }
+
+        // A trip stopping twice (loop routes) counts once
+        Arrays.sort(trips, 0, k);
+        int[] lines = new int[k];
+        int lineCount = 0;
+        for (int i = 0; i < k; i++) {
+            if (i > 0 && trips[i] == trips[i - 1]) continue;
+            int line = tripLines[trips[i]];
+            if (counts[line]++ == 0) lines[lineCount++] = line;
+        }
+
+        long[] keys = new long[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            int line = lines[i];
+            keys[i] = PackedLongs.pack(Integer.MAX_VALUE - counts[line], line);
+            counts[line] = 0;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int lineOf(long key) {
+        return PackedLongs.value(key);
+    }
+
+    private StopRoute toStopRoute(int line, long key) {
+        int trips = Integer.MAX_VALUE - PackedLongs.key(key);
+        return new StopRoute(lineRoutes[line], lineDirections[line], lineHeadsigns[line], trips);
+    }
+}
@@ -0,0 +1,267 @@
+package damose.data.mapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import damose.data.model.PackedLongs;
+import damose.data.model.Stop;
+
+/**
+ * Uniform grid over the stops for nearest, radius and bounding-box queries.
+ * Coordinates are projected once to meters on a plane tangent at the feed center
+ * (equirectangular); across a city distances stay within about 0.5% of
+ * the great-circle distance.
+ * Stops are stored cell by cell in flat arrays; the cell size adapts to the feed
+ * so a cell holds a few stops on average.
+ */
+public class StopSpatialIndex {
+
+    private static final double METERS_PER_DEGREE = 6_371_000 * Math.PI / 180;
+    private static final double MIN_CELL_METERS = 100.0;
+    private static final int STOPS_PER_CELL = 4;
+
+    private final List<Stop> stops;
+    private final double lat0;
+    private final double lon0;
+    private final double cosLat0;
+
+    // Projected stop coordinates, by position in stops
+    private final double[] xs;
+    private final double[] ys;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    // Stops of cell c are cellStops[cellOffsets[c] .. cellOffsets[c + 1])
+    private final int[] cellOffsets;
+    private final int[] cellStops;
+
+    public StopSpatialIndex(List<Stop> stops) {
+        this.stops = List.copyOf(stops);
+        int n = this.stops.size();
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (Stop s : this.stops) {
+            minLat = Math.min(minLat, s.getStopLat());
+            maxLat = Math.max(maxLat, s.getStopLat());
+            minLon = Math.min(minLon, s.getStopLon());
+            maxLon = Math.max(maxLon, s.getStopLon());
+        }
+        this.lat0 = n == 0 ? 0 : (minLat + maxLat) / 2;
+        this.lon0 = n == 0 ? 0 : (minLon + maxLon) / 2;
+        this.cosLat0 = Math.cos(Math.toRadians(lat0));
+
+        this.xs = new double[n];
+        this.ys = new double[n];
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Stop s = this.stops.get(i);
+            xs[i] = projectX(s.getStopLon());
+            ys[i] = projectY(s.getStopLat());
+            x0 = Math.min(x0, xs[i]);
+            y0 = Math.min(y0, ys[i]);
+            x1 = Math.max(x1, xs[i]);
+            y1 = Math.max(y1, ys[i]);
+        }
+        if (n == 0) {
+            x0 = y0 = x1 = y1 = 0;
+        }
+        this.minX = x0;
+        this.minY = y0;
+        double area = Math.max(1.0, (x1 - x0) * (y1 - y0));
+        this.cellSize = Math.max(MIN_CELL_METERS, Math.sqrt(area * STOPS_PER_CELL / Math.max(1, n)));
+        this.cols = (int) ((x1 - x0) / cellSize) + 1;
+        this.rows = (int) ((y1 - y0) / cellSize) + 1;
+
+        // Counting sort of the stops by cell
+        int[] cellOf = new int[n];
+        this.cellOffsets = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = cellRow(ys[i]) * cols + cellCol(xs[i]);
+            cellOffsets[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        this.cellStops = new int[n];
+        int[] cursor = Arrays.copyOf(cellOffsets, cols * rows);
+        for (int i = 0; i < n; i++) {
+            cellStops[cursor[cellOf[i]]++] = i;
+        }
+
+        System.out.println("StopSpatialIndex initialized: stops=" + n + " cells=" + cols + "x" + rows
+                + " cellSize=" + Math.round(cellSize) + "m");
+    }
+
+    /**
+     * Up to {@code k} stops closest to a point, nearest first.
+     */
+    public List<Stop> nearest(double lat, double lon, int k) {
+        if (k <= 0 || stops.isEmpty()) return Collections.emptyList();
+        double x = projectX(lon);
+        double y = projectY(lat);
+        int cx = clamp(cellCol(x), cols);
+        int cy = clamp(cellRow(y), rows);
+
+        // Best k so far as (squared distance, stop) sorted ascending
+        long[] best = new long[0];
+        double kthDist2 = Double.MAX_VALUE;
+        int maxRing = Math.max(cols, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Anything in this ring or beyond is at least (ring - 1) cells away from the point
+            double ringDist = Math.max(0, (ring - 1) * cellSize);
+            if (best.length == k && ringDist * ringDist > kthDist2) break;
+
+            int n = best.length;
+            long[] found = Arrays.copyOf(best, n + ringCapacity(cx, cy, ring));
+            for (int gy = cy - ring; gy <= cy + ring; gy++) {
+                if (gy < 0 || gy >= rows) continue;
+                boolean edgeRow = gy == cy - ring || gy == cy + ring;
+                for (int gx = cx - ring; gx <= cx + ring; gx += edgeRow ? 1 : 2 * ring) {
+                    if (gx >= 0 && gx < cols) {
+                        n = collect(gy * cols + gx, x, y, found, n);
+                    }
+                    if (ring == 0) break;
+                }
+            }
+            if (n == best.length) continue;
+            Arrays.sort(found, 0, n);
+            best = Arrays.copyOf(found, Math.min(k, n));
+            if (best.length == k) kthDist2 = distance2Of(best[k - 1]);
+        }
+
+        List<Stop> result = new ArrayList<>(best.length);
+        for (long entry : best) {
+            result.add(stops.get(PackedLongs.value(entry)));
+        }
+        return result;
+    }
+
+    /**
+     * Stops within {@code meters} of a point, nearest first.
+     */
+    public List<Stop> withinRadius(double lat, double lon, double meters) {
+        double x = projectX(lon);
+        double y = projectY(lat);
+        double r2 = meters * meters;
+        int c0 = clamp(cellCol(x - meters), cols), c1 = clamp(cellCol(x + meters), cols);
+        int r0 = clamp(cellRow(y - meters), rows), r1 = clamp(cellRow(y + meters), rows);
+
+        long[] found = new long[16];
+        int n = 0;
+        for (int gy = r0; gy <= r1; gy++) {
+            for (int gx = c0; gx <= c1; gx++) {
+                int cell = gy * cols + gx;
+                for (int p = cellOffsets[cell]; p < cellOffsets[cell + 1]; p++) {
+                    int i = cellStops[p];
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 > r2) continue;
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = pack(d2, i);
+                }
+            }
+        }
+        Arrays.sort(found, 0, n);
+
+        List<Stop> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(stops.get(PackedLongs.value(found[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Stops inside a latitude/longitude box, in no particular order.
+     */
+    public List<Stop> inBounds(double minLat, double minLon, double maxLat, double maxLon) {
+        List<Stop> result = new ArrayList<>();
+        int c0 = clamp(cellCol(projectX(minLon)), cols), c1 = clamp(cellCol(projectX(maxLon)), cols);
+        int r0 = clamp(cellRow(projectY(minLat)), rows), r1 = clamp(cellRow(projectY(maxLat)), rows);
+        for (int gy = r0; gy <= r1; gy++) {
+            for (int gx = c0; gx <= c1; gx++) {
+                int cell = gy * cols + gx;
+                for (int p = cellOffsets[cell]; p < cellOffsets[cell + 1]; p++) {
+                    Stop s = stops.get(cellStops[p]);
+                    if (s.getStopLat() >= minLat && s.getStopLat() <= maxLat
+                            && s.getStopLon() >= minLon && s.getStopLon() <= maxLon) {
+                        result.add(s);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Distance in meters between a point and a stop, as the index measures it.
+     */
+    public double distance(double lat, double lon, Stop stop) {
+        return Math.hypot(projectX(lon) - projectX(stop.getStopLon()), projectY(lat) - projectY(stop.getStopLat()));
+    }
+
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    private int collect(int cell, double x, double y, long[] found, int n) {
+        for (int p = cellOffsets[cell]; p < cellOffsets[cell + 1]; p++) {
+            int i = cellStops[p];
+            double dx = xs[i] - x, dy = ys[i] - y;
+            found[n++] = pack(dx * dx + dy * dy, i);
+        }
+        return n;
+    }
+
+    private int ringCapacity(int cx, int cy, int ring) {
+        int total = 0;
+        for (int gy = Math.max(0, cy - ring); gy <= Math.min(rows - 1, cy + ring); gy++) {
+            boolean edgeRow = gy == cy - ring || gy == cy + ring;
+            for (int gx = cx - ring; gx <= cx + ring; gx += edgeRow ? 1 : 2 * ring) {
+                if (gx >= 0 && gx < cols) {
+                    int cell = gy * cols + gx;
+                    total += cellOffsets[cell + 1] - cellOffsets[cell];
+                }
+                if (ring == 0) break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * (squared distance, stop) packed so entries sort nearest first: the bits of a
+     * non-negative float order like its value.
+     */
+    private static long pack(double dist2, int stop) {
+        return PackedLongs.pack(Float.floatToIntBits((float) dist2), stop);
+    }
+
+    private static double distance2Of(long entry) {
+        return Float.intBitsToFloat(PackedLongs.key(entry));
+    }
+
+    private double projectX(double lon) {
+        return (lon - lon0) * METERS_PER_DEGREE * cosLat0;
+    }
+
+    private double projectY(double lat) {
+        return (lat - lat0) * METERS_PER_DEGREE;
+    }
+
+    private int cellCol(double x) {
+        return (int) Math.floor((x - minX) / cellSize);
+    }
+
+    private int cellRow(double y) {
+        return (int) Math.floor((y - minY) / cellSize);
+    }
+
+    private static int clamp(int v, int size) {
+        return Math.max(0, Math.min(size - 1, v));
+    }
+}
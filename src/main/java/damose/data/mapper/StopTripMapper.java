@@ -1,118 +1,225 @@
 package damose.data.mapper;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
-import damose.data.model.StopTime;
+import damose.data.model.StopTimeTable;
+import damose.data.model.StringDictionary;
+import damose.data.model.StringTable;
 import damose.data.model.Trip;
 
 /**
  * Maps stops to trips and provides trip sequence lookups.
  * Indexes trip variants for matching regardless of feed format.
+ * Trips and stops are referred to by their dense ids in the stop times table;
+ * a trip's stops ordered by sequence are its rows in the trip grouping of that table.
+ * Normalized ids and variants that are not trip ids themselves are kept in a
+ * compact alias table pointing to one trip id. Both indexes can be saved to and
+ * mapped back from a snapshot (see {@link #writeTo} and {@link #read}).
  */
 public class StopTripMapper {
 
-    private final Map<String, List<StopTime>> stopToTrips = new HashMap<>();
-    private final Map<String, Map<Integer, String>> tripSeqToStop = new HashMap<>();
-    private final Set<String> knownStopIds = new HashSet<>();
-    private final TripMatcher matcher;
+    private static final int[] NO_TRIPS = new int[0];
 
-    public StopTripMapper(List<StopTime> stopTimes, TripMatcher matcher) {
-        this.matcher = matcher;
+    // Real-time trip ids seen in the last feeds; reset when the feed moves on
+    private static final int MAX_RESOLVED_TRIP_IDS = 50_000;
 
-        for (StopTime st : stopTimes) {
-            String stopId = st.getStopId();
-            String rawTripId = st.getTripId();
-            String normTripId = normalizeTripId(rawTripId);
-            int seq = st.getStopSequence();
+    private final StopTimeTable stopTimes;
 
-            if (stopId != null) knownStopIds.add(stopId);
+    // Stop times trip id -> Trip (null if not in trips.txt)
+    private final Trip[] tripsByIndex;
 
-            stopToTrips.computeIfAbsent(stopId, k -> new ArrayList<>()).add(st);
+    // Alias key -> stop times trip id
+    private final StringTable aliases;
+    private final IntBuffer aliasTrips;
 
-            // Index mapping for normalized trip id
-            tripSeqToStop
-                    .computeIfAbsent(normTripId, k -> new HashMap<>())
-                    .put(seq, stopId);
+    // Looked-up trip id -> candidate stop times trip ids, in match order
+    private final Map<String, int[]> resolvedTrips = new ConcurrentHashMap<>();
 
-            // Index all useful variants
-            Set<String> variants = TripIdUtils.generateVariants(rawTripId);
-            for (String v : variants) {
-                String vNorm = normalizeTripId(v);
-                tripSeqToStop
-                        .computeIfAbsent(vNorm, k -> new HashMap<>())
-                        .put(seq, stopId);
+    public StopTripMapper(StopTimeTable stopTimes, TripMatcher matcher) {
+        this.stopTimes = stopTimes;
+
+        int tripCount = stopTimes.tripCount();
+        this.tripsByIndex = new Trip[tripCount];
+        StringDictionary aliasKeys = new StringDictionary();
+        int[] trips = new int[16];
+        for (int t = 0; t < tripCount; t++) {
+            String rawTripId = stopTimes.tripIdAt(t);
+            if (matcher != null) {
+                tripsByIndex[t] = matcher.matchByTripId(rawTripId);
+            }
+            for (String key : keysForTrip(rawTripId)) {
+                // Trip ids resolve through the stop times table itself
+                if (stopTimes.indexOfTrip(key) != StopTimeTable.NONE) continue;
+                int known = aliasKeys.size();
+                int id = aliasKeys.idOf(key);
+                if (id < known) continue; // first trip wins
+                if (id == trips.length) trips = Arrays.copyOf(trips, id * 2);
+                trips[id] = t;
             }
         }
+        this.aliases = aliasKeys.toTable();
+        this.aliasTrips = IntBuffer.wrap(Arrays.copyOf(trips, aliases.size()));
+
+        System.out.println("StopTripMapper initialized: trips=" + tripCount +
+                          " aliases=" + aliases.size());
+    }
+
+    private StopTripMapper(StopTimeTable stopTimes, Trip[] tripsByIndex, StringTable aliases,
+                           IntBuffer aliasTrips) {
+        this.stopTimes = stopTimes;
+        this.tripsByIndex = tripsByIndex;
+        this.aliases = aliases;
+        this.aliasTrips = aliasTrips;
+    }
+
+    /**
+     * Wrap a mapper written by {@link #writeTo} starting at the buffer position.
+     * The alias table is read in place; the position is advanced past the mapper.
+     * @param stopTimes the table the mapper was built on
+     * @param trips the trips list passed to {@link #writeTo}, in the same order
+     */
+    public static StopTripMapper read(ByteBuffer in, StopTimeTable stopTimes, List<Trip> trips) {
+        int tripCount = in.getInt();
+        Trip[] tripsByIndex = new Trip[tripCount];
+        for (int t = 0; t < tripCount; t++) {
+            int ref = in.getInt();
+            tripsByIndex[t] = ref == StopTimeTable.NONE ? null : trips.get(ref);
+        }
+        StringTable aliases = StringTable.read(in);
+        IntBuffer aliasTrips = StringTable.sliceInts(in, aliases.size());
+        return new StopTripMapper(stopTimes, tripsByIndex, aliases, aliasTrips);
+    }
 
-        // Sort stop times by arrival
-        for (List<StopTime> list : stopToTrips.values()) {
-            list.sort(Comparator.comparing(StopTime::getArrivalTime, Comparator.nullsLast(Comparator.naturalOrder())));
+    /**
+     * Write the trip of each stop times trip id, as a position in {@code trips},
+     * and the alias table.
+     */
+    public void writeTo(DataOutput out, List<Trip> trips) throws IOException {
+        Map<Trip, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < trips.size(); i++) {
+            positions.putIfAbsent(trips.get(i), i);
         }
+        out.writeInt(tripsByIndex.length);
+        for (Trip trip : tripsByIndex) {
+            Integer ref = trip == null ? null : positions.get(trip);
+            out.writeInt(ref == null ? StopTimeTable.NONE : ref);
+        }
+        aliases.writeTo(out);
+        StringTable.writeInts(out, aliasTrips);
+    }
 
-        System.out.println("StopTripMapper initialized: stopToTrips=" + stopToTrips.size() + 
-                          " tripSeqToStop=" + tripSeqToStop.size());
+    /**
+     * Normalized trip id and all its useful variants.
+     */
+    private Set<String> keysForTrip(String rawTripId) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalizeTripId(rawTripId));
+        for (String v : TripIdUtils.generateVariants(rawTripId)) {
+            keys.add(normalizeTripId(v));
+        }
+        return keys;
     }
 
     public List<Trip> getTripsForStop(String stopId) {
-        List<StopTime> times = stopToTrips.getOrDefault(stopId, Collections.emptyList());
-        if (times.isEmpty() || matcher == null) return Collections.emptyList();
+        int stopIdx = stopTimes.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE) return Collections.emptyList();
 
-        List<Trip> result = new ArrayList<>(times.size());
-        for (StopTime st : times) {
-            Trip trip = matcher.matchByTripId(st.getTripId());
+        Set<Trip> result = new LinkedHashSet<>();
+        for (int pos = stopTimes.stopRowsStart(stopIdx); pos < stopTimes.stopRowsEnd(stopIdx); pos++) {
+            Trip trip = tripsByIndex[stopTimes.getTripIndex(stopTimes.stopRowAt(pos))];
             if (trip != null) result.add(trip);
         }
-        return result.stream().distinct().collect(Collectors.toList());
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Trip for a stop times trip id, or null if trips.txt does not list it.
+     */
+    public Trip getTrip(int tripIdx) {
+        return tripsByIndex[tripIdx];
     }
 
     public boolean isKnownStopId(String stopId) {
-        return stopId != null && knownStopIds.contains(stopId);
+        return stopTimes.indexOfStop(stopId) != StopTimeTable.NONE;
     }
 
     public String getStopIdByTripAndSequence(String tripId, int sequence) {
-        if (tripId == null) return null;
-
-        // Try direct normalized lookup
-        String norm = normalizeTripId(tripId);
-        Map<Integer, String> seqMap = tripSeqToStop.get(norm);
-        if (seqMap != null) {
-            String s = seqMap.get(sequence);
-            if (s != null) {
-                return s;
-            }
+        int stopIdx = getStopIndexByTripAndSequence(tripId, sequence);
+        return stopIdx == StopTimeTable.NONE ? null : stopTimes.stopIdAt(stopIdx);
+    }
+
+    /**
+     * Tries the normalized trip id first, then its variants.
+     * Candidate trips of an id are resolved once, so repeated lookups do not allocate.
+     * @return stop id in the stop times table, or {@link StopTimeTable#NONE}
+     */
+    public int getStopIndexByTripAndSequence(String tripId, int sequence) {
+        if (tripId == null) return StopTimeTable.NONE;
+
+        int[] candidates = resolvedTrips.get(tripId);
+        if (candidates == null) {
+            candidates = resolveTrips(tripId);
+            if (resolvedTrips.size() >= MAX_RESOLVED_TRIP_IDS) resolvedTrips.clear();
+            resolvedTrips.put(tripId, candidates);
         }
 
-        // Try all variants
-        Set<String> variants = TripIdUtils.generateVariants(tripId);
-        for (String v : variants) {
-            String vNorm = normalizeTripId(v);
-            Map<Integer, String> m = tripSeqToStop.get(vNorm);
-            if (m != null) {
-                String s = m.get(sequence);
-                if (s != null) {
-                    return s;
-                }
+        for (int tripIdx : candidates) {
+            int pos = stopTimes.findTripRow(tripIdx, sequence);
+            if (pos != StopTimeTable.NONE) {
+                return stopTimes.getStopIndex(stopTimes.tripRowAt(pos));
             }
         }
+        return StopTimeTable.NONE;
+    }
+
+    private int[] resolveTrips(String tripId) {
+        Set<Integer> trips = new LinkedHashSet<>();
+        addTrip(trips, normalizeTripId(tripId));
+        for (String v : TripIdUtils.generateVariants(tripId)) {
+            addTrip(trips, normalizeTripId(v));
+        }
+        return trips.isEmpty() ? NO_TRIPS : trips.stream().mapToInt(Integer::intValue).toArray();
+    }
 
-        return null;
+    private void addTrip(Set<Integer> trips, String key) {
+        int tripIdx = stopTimes.indexOfTrip(key);
+        if (tripIdx == StopTimeTable.NONE) {
+            int alias = aliases.indexOf(key);
+            if (alias == StopTimeTable.NONE) return;
+            tripIdx = aliasTrips.get(alias);
+        }
+        trips.add(tripIdx);
     }
 
-    public List<StopTime> getStopTimesForStop(String stopId) {
-        return stopToTrips.getOrDefault(stopId, Collections.emptyList());
+    /**
+     * Columnar stop times backing this mapper; rows of a stop are ordered by arrival.
+     */
+    public StopTimeTable getStopTimes() {
+        return stopTimes;
     }
 
-    private String normalizeTripId(String id) {
+    /**
+     * Strip a leading "digits#" prefix and surrounding whitespace.
+     */
+    private static String normalizeTripId(String id) {
         if (id == null) return null;
-        return id.replaceFirst("^\\d+#", "").trim();
+        int i = 0;
+        while (i < id.length() && id.charAt(i) >= '0' && id.charAt(i) <= '9') i++;
+        if (i > 0 && i < id.length() && id.charAt(i) == '#') {
+            id = id.substring(i + 1);
+        }
+        return id.trim();
     }
 }
-
@@ -9,6 +9,8 @@ import damose.data.model.VehiclePosition;
 
 /**
  * Matches real-time vehicle positions to static trip data.
+ * Line and trip searches are answered by the route catalog, see
+ * {@link damose.service.RouteService#searchLines}.
  */
 public class TripMatcher {
 
@@ -32,17 +34,4 @@ public class TripMatcher {
     public Trip matchByTripId(String tripId) {
         return tripsById.get(tripId);
     }
-
-    /**
-     * Search trips by route_id, headsign, or short_name.
-     */
-    public List<Trip> searchByRouteOrHeadsign(String query) {
-        String q = query.toLowerCase();
-        return tripsById.values().stream()
-                .filter(t -> t.getRouteId().toLowerCase().contains(q)
-                          || t.getTripHeadsign().toLowerCase().contains(q)
-                          || (t.getTripShortName() != null && t.getTripShortName().toLowerCase().contains(q)))
-                .collect(Collectors.toList());
-    }
 }
-
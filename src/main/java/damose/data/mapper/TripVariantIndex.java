@@ -0,0 +1,185 @@
+package damose.data.mapper;
+
+import java.util.Arrays;
+import java.util.List;
+
+import damose.data.model.PackedLongs;
+import damose.data.model.StopTimeTable;
+import damose.data.model.StringDictionary;
+import damose.data.model.StringTable;
+
+/**
+ * Id variants of every trip of a stop times table, for resolving GTFS-RT trip keys
+ * against static trips.
+ * A RT key resolves to a static trip when it is one of the trip's variants (direct
+ * match) or contains one (fuzzy match). Variants are generated once per table; each
+ * RT feed is then resolved in one pass over the substrings of its keys, instead of
+ * testing every key against every trip at query time. Substrings are looked up by
+ * a hash extended one character at a time, so none is ever built.
+ */
+public class TripVariantIndex {
+
+    // Entry bits: trip index << POS_BITS | variant position
+    private static final int POS_BITS = 4;
+    private static final int KEY_BITS = 27;
+    private static final long FUZZY = 1L << (POS_BITS + KEY_BITS);
+
+    private final StopTimeTable stopTimes;
+    // Variant id -> trips having it, with its position in the trip's variant set
+    private final StringTable variants;
+    private final int[][] tripsByVariant;
+    private final int minLength;
+    private final int maxLength;
+
+    public TripVariantIndex(StopTimeTable stopTimes) {
+        this.stopTimes = stopTimes;
+
+        StringDictionary variantIds = new StringDictionary();
+        int[][] byVariant = new int[16][];
+        int min = Integer.MAX_VALUE, max = 0;
+        for (int t = 0; t < stopTimes.tripCount(); t++) {
+            int pos = 0;
+            for (String v : variantsOf(stopTimes.tripIdAt(t))) {
+                int entry = (t << POS_BITS) | Math.min(pos++, (1 << POS_BITS) - 1);
+                int id = variantIds.idOf(v);
+                if (id == byVariant.length) byVariant = Arrays.copyOf(byVariant, id * 2);
+                int[] entries = byVariant[id];
+                if (entries == null) {
+                    entries = new int[] { entry };
+                } else {
+                    entries = Arrays.copyOf(entries, entries.length + 1);
+                    entries[entries.length - 1] = entry;
+                }
+                byVariant[id] = entries;
+                min = Math.min(min, v.length());
+                max = Math.max(max, v.length());
+            }
+        }
+        this.variants = variantIds.toTable();
+        this.tripsByVariant = Arrays.copyOf(byVariant, variants.size());
+        // No variants at all: nothing to look up
+        this.minLength = variants.size() == 0 ? 0 : min;
+        this.maxLength = max;
+
+        System.out.println("TripVariantIndex initialized: trips=" + stopTimes.tripCount()
+                + " variants=" + variants.size());
+    }
+
+    /**
+     * Variants a trip id is matched by, normalized the way RT keys are.
+     * The iteration order of the set is the order direct matches are tried in.
+     */
+    public static Iterable<String> variantsOf(String tripId) {
+        String normalized = TripIdUtils.normalizeSimple(tripId);
+        return TripIdUtils.generateVariants(normalized != null ? normalized.trim() : null);
+    }
+
+    public StopTimeTable getStopTimes() {
+        return stopTimes;
+    }
+
+    /**
+     * Resolve the keys of a RT feed against the trips.
+     * Candidates of a trip are its direct matches in variant order, then the keys
+     * containing one of its variants in the order of {@code rtKeys}.
+     */
+    public Resolution resolve(List<String> rtKeys) {
+        long[] found = new long[Math.max(16, rtKeys.size())];
+        int n = 0;
+        for (int k = 0; k < rtKeys.size(); k++) {
+            String key = rtKeys.get(k);
+            if (key == null) continue;
+
+            int directId = variants.indexOf(key);
+            int[] direct = directId < 0 ? null : tripsByVariant[directId];
+            if (direct != null) {
+                for (int entry : direct) {
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = pack(entry >>> POS_BITS, (long) (entry & ((1 << POS_BITS) - 1)) << KEY_BITS | k);
+                }
+            }
+
+            for (int i = 0; i < key.length(); i++) {
+                // String.hashCode of key[i, i + len), extended by one character per length
+                int hash = 0;
+                int maxLen = Math.min(maxLength, key.length() - i);
+                for (int len = 1; len <= maxLen; len++) {
+                    hash = 31 * hash + key.charAt(i + len - 1);
+                    // The whole key was already looked up as a direct match
+                    if (len < minLength || (direct != null && len == key.length())) continue;
+                    int id = variants.indexOf(key, i, len, hash);
+                    if (id < 0) continue;
+                    for (int entry : tripsByVariant[id]) {
+                        // Trips matching the key directly already have it as a better candidate
+                        if (direct != null && hasTrip(direct, entry >>> POS_BITS)) continue;
+                        if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                        found[n++] = pack(entry >>> POS_BITS, FUZZY | k);
+                    }
+                }
+            }
+        }
+        Arrays.sort(found, 0, n);
+
+        int tripCount = stopTimes.tripCount();
+        int[] offsets = new int[tripCount + 1];
+        int[] keys = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            // A key containing several variants of a trip is kept once
+            if (i > 0 && found[i] == found[i - 1]) continue;
+            offsets[PackedLongs.key(found[i]) + 1]++;
+            keys[size++] = PackedLongs.value(found[i]) & ((1 << KEY_BITS) - 1);
+        }
+        for (int t = 0; t < tripCount; t++) {
+            offsets[t + 1] += offsets[t];
+        }
+        return new Resolution(offsets, Arrays.copyOf(keys, size));
+    }
+
+    private static boolean hasTrip(int[] entries, int trip) {
+        for (int entry : entries) {
+            if (entry >>> POS_BITS == trip) return true;
+        }
+        return false;
+    }
+
+    /**
+     * (trip, candidate) packed so each trip's candidates are contiguous, direct
+     * matches by variant position first, then fuzzy ones, each in key order.
+     */
+    private static long pack(int trip, long candidate) {
+        return PackedLongs.pack(trip, (int) candidate);
+    }
+
+    /**
+     * RT keys resolved for each trip of one feed, best first: the candidates of
+     * trip t are keys[offsets[t] .. offsets[t + 1]).
+     */
+    public static final class Resolution {
+
+        public static final Resolution EMPTY = new Resolution(new int[1], new int[0]);
+
+        private final int[] offsets;
+        private final int[] keys;
+
+        private Resolution(int[] offsets, int[] keys) {
+            this.offsets = offsets;
+            this.keys = keys;
+        }
+
+        public int candidatesStart(int tripIdx) {
+            return tripIdx + 1 < offsets.length ? offsets[tripIdx] : 0;
+        }
+
+        public int candidatesEnd(int tripIdx) {
+            return tripIdx + 1 < offsets.length ? offsets[tripIdx + 1] : 0;
+        }
+
+        /**
+         * Index in the feed's key list of the candidate at {@code pos}.
+         */
+        public int keyAt(int pos) {
+            return keys[pos];
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package damose.data.model;
+
+/**
+ * Expected arrival of a trip at a stop: the scheduled time and, when the realtime
+ * feed has one, the predicted time.
+ */
+public class ArrivalPrediction {
+
+    /**
+     * Where the expected time comes from.
+     */
+    public enum Source {
+        REALTIME,
+        STATIC
+    }
+
+    private final String routeId;
+    private final String tripId;
+    private final String headsign;
+    private final int arrivalSeconds;
+    private final long scheduledEpoch;
+    private final Long predictedEpoch;
+
+    /**
+     * @param arrivalSeconds scheduled arrival, in seconds since the start of the service day
+     * @param predictedEpoch realtime arrival, or null if there is none
+     */
+    public ArrivalPrediction(String routeId, String tripId, String headsign, int arrivalSeconds,
+                             long scheduledEpoch, Long predictedEpoch) {
+        this.routeId = routeId;
+        this.tripId = tripId;
+        this.headsign = headsign;
+        this.arrivalSeconds = arrivalSeconds;
+        this.scheduledEpoch = scheduledEpoch;
+        this.predictedEpoch = predictedEpoch;
+    }
+
+    // -------- Getters --------
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public String getTripId() {
+        return tripId;
+    }
+
+    public String getHeadsign() {
+        return headsign;
+    }
+
+    public int getArrivalSeconds() {
+        return arrivalSeconds;
+    }
+
+    public long getScheduledEpoch() {
+        return scheduledEpoch;
+    }
+
+    /**
+     * @return realtime arrival epoch, or null for a static arrival
+     */
+    public Long getPredictedEpoch() {
+        return predictedEpoch;
+    }
+
+    public Source getSource() {
+        return predictedEpoch != null ? Source.REALTIME : Source.STATIC;
+    }
+
+    public boolean isRealtime() {
+        return predictedEpoch != null;
+    }
+
+    /**
+     * Predicted minus scheduled time, 0 for a static arrival; negative when early.
+     */
+    public long getDelaySeconds() {
+        return predictedEpoch != null ? predictedEpoch - scheduledEpoch : 0;
+    }
+
+    /**
+     * Predicted time when known, scheduled time otherwise.
+     */
+    public long getExpectedEpoch() {
+        return predictedEpoch != null ? predictedEpoch : scheduledEpoch;
+    }
+
+    @Override
+    public String toString() {
+        return "ArrivalPrediction{routeId='" + routeId + "', tripId='" + tripId + "', scheduled=" + scheduledEpoch
+                + ", predicted=" + predictedEpoch + ", source=" + getSource() + "}";
+    }
+}
@@ -0,0 +1,58 @@
+package damose.data.model;
+
+import java.time.LocalDate;
+
+/**
+ * A scheduled stop time of a trip running on a given service day.
+ */
+public class Departure {
+
+    private final int stopTimeRow;
+    private final Trip trip;
+    private final LocalDate serviceDate;
+    private final int arrivalSeconds;
+    private final long scheduledEpoch;
+
+    /**
+     * @param stopTimeRow row of the stop time in the stop times table
+     * @param arrivalSeconds seconds since the start of the service day
+     */
+    public Departure(int stopTimeRow, Trip trip, LocalDate serviceDate, int arrivalSeconds, long scheduledEpoch) {
+        this.stopTimeRow = stopTimeRow;
+        this.trip = trip;
+        this.serviceDate = serviceDate;
+        this.arrivalSeconds = arrivalSeconds;
+        this.scheduledEpoch = scheduledEpoch;
+    }
+
+    // -------- Getters --------
+    public int getStopTimeRow() {
+        return stopTimeRow;
+    }
+
+    public Trip getTrip() {
+        return trip;
+    }
+
+    public String getRouteId() {
+        return trip.getRouteId();
+    }
+
+    public LocalDate getServiceDate() {
+        return serviceDate;
+    }
+
+    public int getArrivalSeconds() {
+        return arrivalSeconds;
+    }
+
+    public long getScheduledEpoch() {
+        return scheduledEpoch;
+    }
+
+    @Override
+    public String toString() {
+        return "Departure{routeId='" + trip.getRouteId() + "', tripId='" + trip.getTripId()
+                + "', serviceDate=" + serviceDate + ", arrivalSeconds=" + arrivalSeconds + "}";
+    }
+}
@@ -0,0 +1,70 @@
+package damose.data.model;
+
+/**
+ * A bus line as offered to the user: a route towards one headsign,
+ * with the number of trips it covers.
+ */
+public class Line {
+
+    private final Route route;
+    private final String headsign;
+    private final int tripCount;
+    private final String id;
+
+    public Line(Route route, String headsign, int tripCount) {
+        this.route = route;
+        this.headsign = headsign;
+        this.tripCount = tripCount;
+        this.id = route.getRouteId() + "|" + (headsign != null ? headsign : "");
+    }
+
+    // -------- Getters --------
+
+    /**
+     * Stable identifier, used to persist favorite lines.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public String getRouteId() {
+        return route.getRouteId();
+    }
+
+    public String getHeadsign() {
+        return headsign;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Route short name and headsign, e.g. "64 - Termini".
+     */
+    public String getName() {
+        String name = route.getDisplayName();
+        return headsign != null && !headsign.isEmpty() ? name + " - " + headsign : name;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return id.equals(((Line) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
@@ -0,0 +1,50 @@
+package damose.data.model;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sort keys packed with their payload into one long: the key in the high 32 bits,
+ * the value in the low 32 bits. With a non-negative key, signed long order is key
+ * order with ties broken by value, so {@link Arrays#sort(long[])} orders the pairs
+ * without a comparator or boxing, and the value is read back from the sorted longs.
+ */
+public final class PackedLongs {
+
+    private PackedLongs() {
+        // Utility class
+    }
+
+    /**
+     * @param key non-negative sort key
+     * @param value payload, read back unsigned
+     */
+    public static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFF_FFFFL);
+    }
+
+    public static int key(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int value(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Reorder ids[from, to) by keyOf (non-negative), ties by id.
+     */
+    public static void sortBy(int[] ids, int from, int to, IntUnaryOperator keyOf) {
+        int n = to - from;
+        if (n < 2) return;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            int id = ids[from + i];
+            packed[i] = pack(keyOf.applyAsInt(id), id);
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < n; i++) {
+            ids[from + i] = value(packed[i]);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package damose.data.model;
+
+/**
+ * Represents a route from GTFS static data (routes.txt).
+ */
+public class Route {
+
+    /** GTFS route_type of buses, assumed when the feed does not say. */
+    public static final int TYPE_BUS = 3;
+
+    private final String routeId;
+    private final String agencyId;
+    private final String shortName;
+    private final String longName;
+    private final int routeType;
+    private final String color;
+    private final String textColor;
+
+    /**
+     * @param color route_color as six hex digits, or null
+     * @param textColor route_text_color as six hex digits, or null
+     */
+    public Route(String routeId, String agencyId, String shortName, String longName,
+                 int routeType, String color, String textColor) {
+        this.routeId = routeId;
+        this.agencyId = agencyId;
+        this.shortName = shortName;
+        this.longName = longName;
+        this.routeType = routeType;
+        this.color = color;
+        this.textColor = textColor;
+    }
+
+    /**
+     * Route referenced by trips but missing from routes.txt.
+     */
+    public static Route unlisted(String routeId) {
+        return new Route(routeId, null, routeId, null, TYPE_BUS, null, null);
+    }
+
+    // -------- Getters --------
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public String getAgencyId() {
+        return agencyId;
+    }
+
+    public String getShortName() {
+        return shortName;
+    }
+
+    public String getLongName() {
+        return longName;
+    }
+
+    public int getRouteType() {
+        return routeType;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public String getTextColor() {
+        return textColor;
+    }
+
+    /**
+     * Short name as shown on the vehicles, falling back to the route id.
+     */
+    public String getDisplayName() {
+        return shortName != null && !shortName.isEmpty() ? shortName : routeId;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{routeId='" + routeId + "', shortName='" + shortName + "', type=" + routeType + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Route route = (Route) o;
+        return routeId != null ? routeId.equals(route.routeId) : route.routeId == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return routeId != null ? routeId.hashCode() : 0;
+    }
+}
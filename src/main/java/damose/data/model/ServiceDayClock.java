@@ -0,0 +1,67 @@
+package damose.data.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * Converts GTFS stop times to epoch seconds.
+ * GTFS counts times from "noon minus 12h" of the service day in the agency time zone,
+ * which is midnight except on DST change days, and hours may exceed 24 for trips
+ * running past midnight. Day starts are precomputed over the feed's date range,
+ * so a scheduled epoch is a single addition.
+ */
+public final class ServiceDayClock {
+
+    private final ZoneId zone;
+    private final long firstEpochDay;
+    private final long[] dayStarts;
+
+    /**
+     * @param first first service date to precompute (inclusive)
+     * @param last last service date to precompute (inclusive)
+     */
+    public ServiceDayClock(ZoneId zone, LocalDate first, LocalDate last) {
+        this.zone = zone;
+        this.firstEpochDay = first.toEpochDay();
+        int days = (int) Math.max(0, last.toEpochDay() - firstEpochDay + 1);
+        this.dayStarts = new long[days];
+        for (int i = 0; i < days; i++) {
+            dayStarts[i] = computeDayStart(first.plusDays(i));
+        }
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Calendar date of an instant in the agency time zone.
+     */
+    public LocalDate dateOf(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * Epoch second at which times of the given service day are counted from.
+     */
+    public long dayStart(LocalDate serviceDate) {
+        long i = serviceDate.toEpochDay() - firstEpochDay;
+        if (i >= 0 && i < dayStarts.length) {
+            return dayStarts[(int) i];
+        }
+        return computeDayStart(serviceDate);
+    }
+
+    /**
+     * @param seconds seconds since the service day start, as stored in {@link StopTimeTable}
+     */
+    public long toEpoch(LocalDate serviceDate, int seconds) {
+        return dayStart(serviceDate) + seconds;
+    }
+
+    private long computeDayStart(LocalDate date) {
+        return date.atTime(LocalTime.NOON).atZone(zone).toEpochSecond() - 12 * 3600;
+    }
+}
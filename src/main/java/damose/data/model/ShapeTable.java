@@ -0,0 +1,309 @@
+package damose.data.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Columnar store for GTFS shapes.txt geometry.
+ * Points are kept in int columns as microdegrees, grouped by shape and ordered
+ * by shape_pt_sequence: points of shape s are at positions
+ * [{@link #pointsStart}, {@link #pointsEnd}).
+ * <p>
+ * Each shape is also simplified once with Douglas-Peucker at {@link #LEVEL_COUNT}
+ * tolerances doubling from {@link #MIN_TOLERANCE}, one per map zoom step, so drawing
+ * picks a level of detail instead of simplifying on every repaint.
+ * Distances are measured in Web Mercator, in degrees of longitude.
+ */
+public final class ShapeTable {
+
+    /** Marker for an unknown shape. */
+    public static final int NONE = -1;
+
+    /** Tolerance of level 0, in degrees (about 20 cm, under a pixel at the closest map zoom). */
+    public static final double MIN_TOLERANCE = 2e-6;
+
+    /** Simplification levels; level k has tolerance MIN_TOLERANCE * 2^k. */
+    public static final int LEVEL_COUNT = 18;
+
+    private static final double E6 = 1_000_000.0;
+
+    private final StringTable shapeIds;
+    private final int size;
+
+    // Points of shape s are at [pointOffsets[s], pointOffsets[s + 1])
+    private final IntBuffer pointOffsets;
+    private final IntBuffer latE6;
+    private final IntBuffer lonE6;
+
+    // Points of shape s at level k, as positions in the point columns, are
+    // levelPoints[levelOffsets[k * (shapeCount + 1) + s] .. levelOffsets[k * (shapeCount + 1) + s + 1])
+    private final IntBuffer levelOffsets;
+    private final IntBuffer levelPoints;
+
+    private ShapeTable(Builder b) {
+        this.shapeIds = b.shapeIds.toTable();
+        int shapeCount = shapeIds.size();
+        this.size = b.size;
+
+        // Group points by shape (counting sort), then order each shape by sequence
+        int[] offsets = new int[shapeCount + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[b.shapeIndex[i] + 1]++;
+        }
+        for (int s = 0; s < shapeCount; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        int[] order = new int[size];
+        int[] cursor = Arrays.copyOf(offsets, shapeCount);
+        for (int i = 0; i < size; i++) {
+            order[cursor[b.shapeIndex[i]]++] = i;
+        }
+        for (int s = 0; s < shapeCount; s++) {
+            PackedLongs.sortBy(order, offsets[s], offsets[s + 1], point -> b.sequence[point]);
+        }
+
+        int[] lats = new int[size];
+        int[] lons = new int[size];
+        for (int p = 0; p < size; p++) {
+            lats[p] = b.latE6[order[p]];
+            lons[p] = b.lonE6[order[p]];
+        }
+        this.pointOffsets = IntBuffer.wrap(offsets);
+        this.latE6 = IntBuffer.wrap(lats);
+        this.lonE6 = IntBuffer.wrap(lons);
+
+        double[] importance = new double[size];
+        for (int s = 0; s < shapeCount; s++) {
+            rankPoints(lats, lons, offsets[s], offsets[s + 1], importance);
+        }
+
+        int[] levels = new int[LEVEL_COUNT * (shapeCount + 1)];
+        int total = 0;
+        for (int k = 0; k < LEVEL_COUNT; k++) {
+            double tolerance = levelTolerance(k);
+            for (int p = 0; p < size; p++) {
+                if (importance[p] > tolerance) total++;
+            }
+        }
+        int[] kept = new int[total];
+        int n = 0;
+        for (int k = 0; k < LEVEL_COUNT; k++) {
+            double tolerance = levelTolerance(k);
+            int base = k * (shapeCount + 1);
+            for (int s = 0; s < shapeCount; s++) {
+                levels[base + s] = n;
+                for (int p = offsets[s]; p < offsets[s + 1]; p++) {
+                    if (importance[p] > tolerance) kept[n++] = p;
+                }
+            }
+            levels[base + shapeCount] = n;
+        }
+        this.levelOffsets = IntBuffer.wrap(levels);
+        this.levelPoints = IntBuffer.wrap(kept);
+    }
+
+    private ShapeTable(ByteBuffer in) {
+        this.size = in.getInt();
+        this.shapeIds = StringTable.read(in);
+        int shapeCount = shapeIds.size();
+        this.pointOffsets = StringTable.sliceInts(in, shapeCount + 1);
+        this.latE6 = StringTable.sliceInts(in, size);
+        this.lonE6 = StringTable.sliceInts(in, size);
+        this.levelOffsets = StringTable.sliceInts(in, LEVEL_COUNT * (shapeCount + 1));
+        this.levelPoints = StringTable.sliceInts(in, in.getInt());
+    }
+
+    /**
+     * Wrap a table written by {@link #writeTo(DataOutput)} starting at the buffer position.
+     * Columns are read in place; the position is advanced past the table.
+     */
+    public static ShapeTable read(ByteBuffer in) {
+        return new ShapeTable(in);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        shapeIds.writeTo(out);
+        StringTable.writeInts(out, pointOffsets);
+        StringTable.writeInts(out, latE6);
+        StringTable.writeInts(out, lonE6);
+        StringTable.writeInts(out, levelOffsets);
+        out.writeInt(levelPoints.limit());
+        StringTable.writeInts(out, levelPoints);
+    }
+
+    /**
+     * Douglas-Peucker without a tolerance: each point gets the largest tolerance it
+     * survives, the distance that split it capped by that of the segment it split.
+     * Keeping the points above a tolerance gives that tolerance's simplification.
+     */
+    private static void rankPoints(int[] lats, int[] lons, int from, int to, double[] importance) {
+        if (to - from < 1) return;
+        importance[from] = Double.POSITIVE_INFINITY;
+        importance[to - 1] = Double.POSITIVE_INFINITY;
+        if (to - from < 3) return;
+
+        double[] x = new double[to - from];
+        double[] y = new double[to - from];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = lons[from + i] / E6;
+            y[i] = mercatorY(lats[from + i] / E6);
+        }
+
+        // Segments (first, last, cap) still to split
+        int[] firsts = new int[x.length];
+        int[] lasts = new int[x.length];
+        double[] caps = new double[x.length];
+        int top = 0;
+        firsts[top] = 0;
+        lasts[top] = x.length - 1;
+        caps[top++] = Double.POSITIVE_INFINITY;
+
+        while (top > 0) {
+            top--;
+            int first = firsts[top];
+            int last = lasts[top];
+            double cap = caps[top];
+            if (last - first < 2) continue;
+
+            int split = NONE;
+            double max = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > max) {
+                    max = d;
+                    split = i;
+                }
+            }
+            double rank = Math.min(max, cap);
+            importance[from + split] = rank;
+
+            firsts[top] = first;
+            lasts[top] = split;
+            caps[top++] = rank;
+            firsts[top] = split;
+            lasts[top] = last;
+            caps[top++] = rank;
+        }
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / len2));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+
+    private static double mercatorY(double lat) {
+        return Math.toDegrees(Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lat) / 2)));
+    }
+
+    // -------- Table --------
+    public int size() {
+        return size;
+    }
+
+    public int shapeCount() {
+        return shapeIds.size();
+    }
+
+    /**
+     * @return index of the shape, or {@link #NONE} if unknown
+     */
+    public int indexOfShape(String shapeId) {
+        return shapeId == null ? NONE : shapeIds.indexOf(shapeId);
+    }
+
+    public String shapeIdAt(int shapeIdx) {
+        return shapeIds.get(shapeIdx);
+    }
+
+    // -------- Points --------
+    public int pointsStart(int shapeIdx) {
+        return pointOffsets.get(shapeIdx);
+    }
+
+    public int pointsEnd(int shapeIdx) {
+        return pointOffsets.get(shapeIdx + 1);
+    }
+
+    public double getLat(int point) {
+        return latE6.get(point) / E6;
+    }
+
+    public double getLon(int point) {
+        return lonE6.get(point) / E6;
+    }
+
+    // -------- Simplified levels --------
+    public static double levelTolerance(int level) {
+        return MIN_TOLERANCE * (1L << level);
+    }
+
+    /**
+     * Coarsest level whose tolerance does not exceed the given one, in degrees.
+     */
+    public static int levelFor(double tolerance) {
+        int level = 0;
+        while (level + 1 < LEVEL_COUNT && levelTolerance(level + 1) <= tolerance) {
+            level++;
+        }
+        return level;
+    }
+
+    public int levelStart(int shapeIdx, int level) {
+        return levelOffsets.get(level * (shapeIds.size() + 1) + shapeIdx);
+    }
+
+    public int levelEnd(int shapeIdx, int level) {
+        return levelOffsets.get(level * (shapeIds.size() + 1) + shapeIdx + 1);
+    }
+
+    /**
+     * Point at position {@code pos} of the simplified levels (see {@link #levelStart}).
+     */
+    public int levelPointAt(int pos) {
+        return levelPoints.get(pos);
+    }
+
+    /**
+     * Accumulates points while a shapes file is parsed.
+     */
+    public static final class Builder {
+
+        private final StringDictionary shapeIds = new StringDictionary();
+
+        private int size;
+        private int[] shapeIndex = new int[1 << 12];
+        private int[] latE6 = new int[1 << 12];
+        private int[] lonE6 = new int[1 << 12];
+        private int[] sequence = new int[1 << 12];
+
+        public void add(String shapeId, double lat, double lon, int pointSequence) {
+            if (size == shapeIndex.length) {
+                int capacity = size + (size >> 1);
+                shapeIndex = Arrays.copyOf(shapeIndex, capacity);
+                latE6 = Arrays.copyOf(latE6, capacity);
+                lonE6 = Arrays.copyOf(lonE6, capacity);
+                sequence = Arrays.copyOf(sequence, capacity);
+            }
+            shapeIndex[size] = shapeIds.idOf(shapeId);
+            latE6[size] = (int) Math.round(lat * E6);
+            lonE6[size] = (int) Math.round(lon * E6);
+            sequence[size] = pointSequence;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public ShapeTable build() {
+            return new ShapeTable(this);
+        }
+    }
+}
@@ -11,9 +11,6 @@ public class Stop {
     private final double stopLat;
     private final double stopLon;
 
-    // Flag to distinguish real stops from fake line entries (used in search)
-    private boolean isFakeLine = false;
-
     public Stop(String stopId, String stopCode, String stopName, double stopLat, double stopLon) {
         this.stopId = stopId;
         this.stopCode = stopCode;
@@ -43,18 +40,9 @@ public class Stop {
         return stopLon;
     }
 
-    // -------- Fake Line Support --------
-    public void markAsFakeLine() {
-        this.isFakeLine = true;
-    }
-
-    public boolean isFakeLine() {
-        return isFakeLine;
-    }
-
     @Override
     public String toString() {
-        return isFakeLine ? stopName : stopId + " - " + stopName;
+        return stopId + " - " + stopName;
     }
 
     @Override
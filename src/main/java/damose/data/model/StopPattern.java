@@ -0,0 +1,70 @@
+package damose.data.model;
+
+import java.util.List;
+
+/**
+ * A distinct ordered stop sequence served by trips of one route, direction and headsign.
+ */
+public class StopPattern {
+
+    private final String routeId;
+    private final int directionId;
+    private final String headsign;
+    private final List<Stop> stops;
+    private final int stopTimeCount;
+    private final int tripCount;
+    private final Trip representativeTrip;
+
+    /**
+     * @param stopTimeCount stop times per trip, including stops missing from stops.txt
+     * @param representativeTrip first trip of the feed following this pattern
+     */
+    public StopPattern(String routeId, int directionId, String headsign, List<Stop> stops,
+                       int stopTimeCount, int tripCount, Trip representativeTrip) {
+        this.routeId = routeId;
+        this.directionId = directionId;
+        this.headsign = headsign;
+        this.stops = List.copyOf(stops);
+        this.stopTimeCount = stopTimeCount;
+        this.tripCount = tripCount;
+        this.representativeTrip = representativeTrip;
+    }
+
+    // -------- Getters --------
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public int getDirectionId() {
+        return directionId;
+    }
+
+    public String getHeadsign() {
+        return headsign;
+    }
+
+    /**
+     * Ordered stops; immutable.
+     */
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    public int getStopTimeCount() {
+        return stopTimeCount;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public Trip getRepresentativeTrip() {
+        return representativeTrip;
+    }
+
+    @Override
+    public String toString() {
+        return "StopPattern{routeId='" + routeId + "', direction=" + directionId + ", headsign='" + headsign
+                + "', stops=" + stops.size() + ", trips=" + tripCount + "}";
+    }
+}
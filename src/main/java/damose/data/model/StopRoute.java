@@ -0,0 +1,42 @@
+package damose.data.model;
+
+/**
+ * A route serving a stop in one direction towards one headsign, with the number of trips doing so.
+ */
+public class StopRoute {
+
+    private final String routeId;
+    private final int directionId;
+    private final String headsign;
+    private final int tripCount;
+
+    public StopRoute(String routeId, int directionId, String headsign, int tripCount) {
+        this.routeId = routeId;
+        this.directionId = directionId;
+        this.headsign = headsign;
+        this.tripCount = tripCount;
+    }
+
+    // -------- Getters --------
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public int getDirectionId() {
+        return directionId;
+    }
+
+    public String getHeadsign() {
+        return headsign;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StopRoute{routeId='" + routeId + "', direction=" + directionId + ", headsign='" + headsign
+                + "', trips=" + tripCount + "}";
+    }
+}
@@ -0,0 +1,470 @@
+package damose.data.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar store for GTFS stop_times data.
+ * Every row is a stop time kept in int columns; trip ids, stop ids
+ * and headsigns are dictionary-encoded. Rows are read through {@link View}
+ * so no per-row object is ever allocated.
+ * Columns are int buffers, either on the heap or mapped from a snapshot file
+ * (see {@link #writeTo(DataOutput)} and {@link #read(ByteBuffer)}).
+ */
+public final class StopTimeTable {
+
+    /** Marker for a missing time or headsign. */
+    public static final int NONE = -1;
+
+    private final StringTable tripIds;
+    private final StringTable stopIds;
+    private final StringTable headsigns;
+
+    private final int size;
+    private final IntBuffer tripIndex;
+    private final IntBuffer stopIndex;
+    private final IntBuffer arrivalSeconds;
+    private final IntBuffer departureSeconds;
+    private final IntBuffer stopSequence;
+    private final IntBuffer headsignIndex;
+
+    // Rows grouped by stop: rows of stop s are stopRows[stopRowOffsets[s] .. stopRowOffsets[s + 1]),
+    // ordered by arrival time (missing times last)
+    private final IntBuffer stopRowOffsets;
+    private final IntBuffer stopRows;
+
+    // Rows grouped by trip: rows of trip t are tripRows[tripRowOffsets[t] .. tripRowOffsets[t + 1]),
+    // ordered by stop_sequence
+    private final IntBuffer tripRowOffsets;
+    private final IntBuffer tripRows;
+
+    private StopTimeTable(Builder b) {
+        this.tripIds = b.tripIds.toTable();
+        this.stopIds = b.stopIds.toTable();
+        this.headsigns = b.headsigns.toTable();
+
+        this.size = b.size;
+        int[] trips = Arrays.copyOf(b.tripIndex, size);
+        int[] stops = Arrays.copyOf(b.stopIndex, size);
+        int[] arrivals = Arrays.copyOf(b.arrivalSeconds, size);
+        int[] sequences = Arrays.copyOf(b.stopSequence, size);
+        this.tripIndex = IntBuffer.wrap(trips);
+        this.stopIndex = IntBuffer.wrap(stops);
+        this.arrivalSeconds = IntBuffer.wrap(arrivals);
+        this.departureSeconds = IntBuffer.wrap(Arrays.copyOf(b.departureSeconds, size));
+        this.stopSequence = IntBuffer.wrap(sequences);
+        this.headsignIndex = IntBuffer.wrap(Arrays.copyOf(b.headsignIndex, size));
+
+        int[] offsets = new int[stopIds.size() + 1];
+        int[] rows = new int[size];
+        groupRows(stops, arrivals, offsets, rows);
+        this.stopRowOffsets = IntBuffer.wrap(offsets);
+        this.stopRows = IntBuffer.wrap(rows);
+
+        offsets = new int[tripIds.size() + 1];
+        rows = new int[size];
+        groupRows(trips, sequences, offsets, rows);
+        this.tripRowOffsets = IntBuffer.wrap(offsets);
+        this.tripRows = IntBuffer.wrap(rows);
+    }
+
+    private StopTimeTable(ByteBuffer in) {
+        this.size = in.getInt();
+        this.tripIds = StringTable.read(in);
+        this.stopIds = StringTable.read(in);
+        this.headsigns = StringTable.read(in);
+        this.tripIndex = StringTable.sliceInts(in, size);
+        this.stopIndex = StringTable.sliceInts(in, size);
+        this.arrivalSeconds = StringTable.sliceInts(in, size);
+        this.departureSeconds = StringTable.sliceInts(in, size);
+        this.stopSequence = StringTable.sliceInts(in, size);
+        this.headsignIndex = StringTable.sliceInts(in, size);
+        this.stopRowOffsets = StringTable.sliceInts(in, stopIds.size() + 1);
+        this.stopRows = StringTable.sliceInts(in, size);
+        this.tripRowOffsets = StringTable.sliceInts(in, tripIds.size() + 1);
+        this.tripRows = StringTable.sliceInts(in, size);
+    }
+
+    /**
+     * Wrap a table written by {@link #writeTo(DataOutput)} starting at the buffer position.
+     * Columns are read in place, nothing is copied; the position is advanced past the table.
+     */
+    public static StopTimeTable read(ByteBuffer in) {
+        return new StopTimeTable(in);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        tripIds.writeTo(out);
+        stopIds.writeTo(out);
+        headsigns.writeTo(out);
+        StringTable.writeInts(out, tripIndex);
+        StringTable.writeInts(out, stopIndex);
+        StringTable.writeInts(out, arrivalSeconds);
+        StringTable.writeInts(out, departureSeconds);
+        StringTable.writeInts(out, stopSequence);
+        StringTable.writeInts(out, headsignIndex);
+        StringTable.writeInts(out, stopRowOffsets);
+        StringTable.writeInts(out, stopRows);
+        StringTable.writeInts(out, tripRowOffsets);
+        StringTable.writeInts(out, tripRows);
+    }
+
+    /**
+     * Group rows by {@code groupOf} (counting sort) and order each group by {@code orderBy},
+     * with {@link #NONE} values last.
+     */
+    private static void groupRows(int[] groupOf, int[] orderBy, int[] offsets, int[] rows) {
+        int groupCount = offsets.length - 1;
+
+        // Counting sort by group
+        for (int row = 0; row < rows.length; row++) {
+            offsets[groupOf[row] + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            offsets[g + 1] += offsets[g];
+        }
+        int[] cursor = Arrays.copyOf(offsets, groupCount);
+        for (int row = 0; row < rows.length; row++) {
+            rows[cursor[groupOf[row]]++] = row;
+        }
+
+        // Groups are independent, so they are ordered in parallel
+        // Rows without a key go last
+        IntStream.range(0, groupCount).parallel()
+                .forEach(g -> PackedLongs.sortBy(rows, offsets[g], offsets[g + 1],
+                        row -> orderBy[row] == NONE ? Integer.MAX_VALUE : orderBy[row]));
+    }
+
+    // -------- Table --------
+    public int size() {
+        return size;
+    }
+
+    public int tripCount() {
+        return tripIds.size();
+    }
+
+    public int stopCount() {
+        return stopIds.size();
+    }
+
+    /**
+     * @return dictionary index of the trip, or {@link #NONE} if unknown
+     */
+    public int indexOfTrip(String tripId) {
+        return tripIds.indexOf(tripId);
+    }
+
+    /**
+     * @return dictionary index of the stop, or {@link #NONE} if unknown
+     */
+    public int indexOfStop(String stopId) {
+        return stopIds.indexOf(stopId);
+    }
+
+    public String tripIdAt(int tripIdx) {
+        return tripIds.get(tripIdx);
+    }
+
+    public String stopIdAt(int stopIdx) {
+        return stopIds.get(stopIdx);
+    }
+
+    // -------- Rows grouped by stop --------
+    public int stopRowsStart(int stopIdx) {
+        return stopRowOffsets.get(stopIdx);
+    }
+
+    public int stopRowsEnd(int stopIdx) {
+        return stopRowOffsets.get(stopIdx + 1);
+    }
+
+    /**
+     * Row at position {@code pos} of the stop grouping (see {@link #stopRowsStart}).
+     */
+    public int stopRowAt(int pos) {
+        return stopRows.get(pos);
+    }
+
+    /**
+     * First position of the stop grouping whose arrival is at or after {@code seconds};
+     * {@link #stopRowsEnd} if there is none. Rows without an arrival time are never returned.
+     */
+    public int findStopRow(int stopIdx, int seconds) {
+        int lo = stopRowOffsets.get(stopIdx);
+        int hi = stopRowOffsets.get(stopIdx + 1);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int arrival = arrivalSeconds.get(stopRows.get(mid));
+            if (arrival != NONE && arrival < seconds) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // -------- Rows grouped by trip --------
+    public int tripRowsStart(int tripIdx) {
+        return tripRowOffsets.get(tripIdx);
+    }
+
+    public int tripRowsEnd(int tripIdx) {
+        return tripRowOffsets.get(tripIdx + 1);
+    }
+
+    /**
+     * Row at position {@code pos} of the trip grouping (see {@link #tripRowsStart}).
+     */
+    public int tripRowAt(int pos) {
+        return tripRows.get(pos);
+    }
+
+    /**
+     * Position of the row with the given stop_sequence in the trip grouping.
+     * @return position, or {@link #NONE} if the trip has no such stop
+     */
+    public int findTripRow(int tripIdx, int sequence) {
+        int lo = tripRowOffsets.get(tripIdx);
+        int hi = tripRowOffsets.get(tripIdx + 1) - 1;
+        if (lo > hi) return NONE;
+
+        // Sequences are usually consecutive: probe the expected position first
+        long guess = (long) lo + sequence - stopSequence.get(tripRows.get(lo));
+        if (guess >= lo && guess <= hi && stopSequence.get(tripRows.get((int) guess)) == sequence) {
+            return (int) guess;
+        }
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int seq = stopSequence.get(tripRows.get(mid));
+            if (seq == NONE) seq = Integer.MAX_VALUE; // sorted last, see groupRows
+            if (seq < sequence) {
+                lo = mid + 1;
+            } else if (seq > sequence) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+
+    // -------- Column access --------
+    public int getTripIndex(int row) {
+        return tripIndex.get(row);
+    }
+
+    public int getStopIndex(int row) {
+        return stopIndex.get(row);
+    }
+
+    public String getTripId(int row) {
+        return tripIds.get(tripIndex.get(row));
+    }
+
+    public String getStopId(int row) {
+        return stopIds.get(stopIndex.get(row));
+    }
+
+    /**
+     * @return seconds since the start of the service day, or {@link #NONE}
+     */
+    public int getArrivalSeconds(int row) {
+        return arrivalSeconds.get(row);
+    }
+
+    public int getDepartureSeconds(int row) {
+        return departureSeconds.get(row);
+    }
+
+    public int getStopSequence(int row) {
+        return stopSequence.get(row);
+    }
+
+    public String getStopHeadsign(int row) {
+        int h = headsignIndex.get(row);
+        return h == NONE ? null : headsigns.get(h);
+    }
+
+    public View view() {
+        return new View();
+    }
+
+    /**
+     * Reusable cursor over one row of the table.
+     * Position it with {@link #moveTo(int)}; a single instance can walk any number of rows.
+     */
+    public final class View {
+
+        private int row = NONE;
+
+        private View() {
+        }
+
+        public View moveTo(int row) {
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getTripIndex() {
+            return tripIndex.get(row);
+        }
+
+        public int getStopIndex() {
+            return stopIndex.get(row);
+        }
+
+        public String getTripId() {
+            return StopTimeTable.this.getTripId(row);
+        }
+
+        public String getStopId() {
+            return StopTimeTable.this.getStopId(row);
+        }
+
+        public int getArrivalSeconds() {
+            return arrivalSeconds.get(row);
+        }
+
+        public int getDepartureSeconds() {
+            return departureSeconds.get(row);
+        }
+
+        /**
+         * Arrival as wall-clock time (hours past 24 are wrapped).
+         */
+        public LocalTime getArrivalTime() {
+            return toLocalTime(arrivalSeconds.get(row));
+        }
+
+        public LocalTime getDepartureTime() {
+            return toLocalTime(departureSeconds.get(row));
+        }
+
+        public int getStopSequence() {
+            return stopSequence.get(row);
+        }
+
+        public String getStopHeadsign() {
+            return StopTimeTable.this.getStopHeadsign(row);
+        }
+
+        @Override
+        public String toString() {
+            return getTripId() + " @ " + getStopId() + " → " + getArrivalTime();
+        }
+    }
+
+    private static LocalTime toLocalTime(int seconds) {
+        if (seconds == NONE) return null;
+        return LocalTime.ofSecondOfDay(seconds % 86_400);
+    }
+
+    /**
+     * Accumulates rows while a stop_times file is parsed.
+     */
+    public static final class Builder {
+
+        private final StringDictionary tripIds = new StringDictionary();
+        private final StringDictionary stopIds = new StringDictionary();
+        private final StringDictionary headsigns = new StringDictionary();
+
+        private int size;
+        private int[] tripIndex;
+        private int[] stopIndex;
+        private int[] arrivalSeconds;
+        private int[] departureSeconds;
+        private int[] stopSequence;
+        private int[] headsignIndex;
+
+        public Builder() {
+            this(1 << 16);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            tripIndex = new int[capacity];
+            stopIndex = new int[capacity];
+            arrivalSeconds = new int[capacity];
+            departureSeconds = new int[capacity];
+            stopSequence = new int[capacity];
+            headsignIndex = new int[capacity];
+        }
+
+        /**
+         * Append a row. Times are seconds since the start of the service day,
+         * or {@link StopTimeTable#NONE} when missing.
+         */
+        public void add(String tripId, String stopId, int arrival, int departure,
+                        int sequence, String headsign) {
+            if (size == tripIndex.length) grow();
+
+            tripIndex[size] = tripIds.idOf(tripId);
+            stopIndex[size] = stopIds.idOf(stopId);
+            arrivalSeconds[size] = arrival;
+            departureSeconds[size] = departure;
+            stopSequence[size] = sequence;
+            headsignIndex[size] = (headsign == null || headsign.isEmpty())
+                    ? NONE
+                    : headsigns.idOf(headsign);
+            size++;
+        }
+
+        /**
+         * Append all rows of another builder after the rows of this one,
+         * re-encoding its dictionaries. Merging partial builders in file order
+         * yields the same table as a single sequential parse.
+         */
+        public void append(Builder other) {
+            int[] tripRemap = tripIds.merge(other.tripIds);
+            int[] stopRemap = stopIds.merge(other.stopIds);
+            int[] headsignRemap = headsigns.merge(other.headsigns);
+
+            int n = other.size;
+            if (size + n > tripIndex.length) resize(Math.max(size + n, size + (size >> 1)));
+            for (int i = 0; i < n; i++) {
+                int h = other.headsignIndex[i];
+                tripIndex[size + i] = tripRemap[other.tripIndex[i]];
+                stopIndex[size + i] = stopRemap[other.stopIndex[i]];
+                headsignIndex[size + i] = h == NONE ? NONE : headsignRemap[h];
+            }
+            System.arraycopy(other.arrivalSeconds, 0, arrivalSeconds, size, n);
+            System.arraycopy(other.departureSeconds, 0, departureSeconds, size, n);
+            System.arraycopy(other.stopSequence, 0, stopSequence, size, n);
+            size += n;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public StopTimeTable build() {
+            return new StopTimeTable(this);
+        }
+
+        private void grow() {
+            resize(tripIndex.length + (tripIndex.length >> 1));
+        }
+
+        private void resize(int capacity) {
+            tripIndex = Arrays.copyOf(tripIndex, capacity);
+            stopIndex = Arrays.copyOf(stopIndex, capacity);
+            arrivalSeconds = Arrays.copyOf(arrivalSeconds, capacity);
+            departureSeconds = Arrays.copyOf(departureSeconds, capacity);
+            stopSequence = Arrays.copyOf(stopSequence, capacity);
+            headsignIndex = Arrays.copyOf(headsignIndex, capacity);
+        }
+    }
+}
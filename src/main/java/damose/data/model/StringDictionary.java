@@ -0,0 +1,95 @@
+package damose.data.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load-time dictionary that assigns dense int ids to identifiers.
+ * Every distinct value is stored once and ids follow first-seen order, so
+ * models and indexes can keep ints and share one String instance per value.
+ * Not thread-safe: each loader fills its own dictionary.
+ */
+public final class StringDictionary {
+
+    /** Id returned for values that are not in the dictionary. */
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> ids;
+    private final List<String> values;
+
+    public StringDictionary() {
+        this(16);
+    }
+
+    public StringDictionary(int expectedSize) {
+        this.ids = new HashMap<>(Math.max(16, expectedSize * 4 / 3 + 1));
+        this.values = new ArrayList<>(Math.max(16, expectedSize));
+    }
+
+    /**
+     * Id of value, adding it if missing. Null maps to {@link #NONE}.
+     */
+    public int idOf(String value) {
+        if (value == null) return NONE;
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            values.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Canonical instance equal to value, adding it if missing.
+     */
+    public String intern(String value) {
+        int id = idOf(value);
+        return id == NONE ? null : values.get(id);
+    }
+
+    /**
+     * @return id of value, or {@link #NONE} if absent
+     */
+    public int find(String value) {
+        if (value == null) return NONE;
+        Integer id = ids.get(value);
+        return id == null ? NONE : id;
+    }
+
+    public String get(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Ids of other's values in this dictionary, indexed by other's ids; missing values are added.
+     */
+    public int[] merge(StringDictionary other) {
+        int[] remap = new int[other.size()];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = idOf(other.values.get(i));
+        }
+        return remap;
+    }
+
+    /**
+     * Values indexed by id.
+     */
+    public List<String> values() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Freeze into an immutable table with the same ids.
+     */
+    public StringTable toTable() {
+        return StringTable.of(values);
+    }
+}
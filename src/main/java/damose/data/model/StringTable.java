@@ -0,0 +1,168 @@
+package damose.data.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Immutable string dictionary stored as UTF-8 bytes plus an open-addressing hash table.
+ * The same layout lives on the heap or in a memory-mapped snapshot, so a mapped
+ * table is queried in place; strings are decoded only when first requested.
+ */
+public final class StringTable {
+
+    private final int count;
+    private final IntBuffer hashes;
+    private final IntBuffer offsets;
+    private final IntBuffer slots;
+    private final ByteBuffer bytes;
+    private final String[] decoded;
+
+    private StringTable(int count, IntBuffer hashes, IntBuffer offsets, IntBuffer slots, ByteBuffer bytes) {
+        this.count = count;
+        this.hashes = hashes;
+        this.offsets = offsets;
+        this.slots = slots;
+        this.bytes = bytes;
+        this.decoded = new String[count];
+    }
+
+    /**
+     * Build a heap table; index i holds values.get(i).
+     */
+    public static StringTable of(List<String> values) {
+        int count = values.size();
+        int[] hashes = new int[count];
+        int[] offsets = new int[count + 1];
+        byte[][] encoded = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+            hashes[i] = values.get(i).hashCode();
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+
+        byte[] bytes = new byte[offsets[count]];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+        }
+
+        // Slots hold index + 1 (0 = empty), load factor at most 50%
+        int[] slots = new int[Integer.highestOneBit(Math.max(1, count) * 2) * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = mix(hashes[i]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = i + 1;
+        }
+
+        StringTable table = new StringTable(count, IntBuffer.wrap(hashes), IntBuffer.wrap(offsets),
+                IntBuffer.wrap(slots), ByteBuffer.wrap(bytes));
+        values.toArray(table.decoded);
+        return table;
+    }
+
+    /**
+     * Wrap a table written by {@link #writeTo(DataOutput)} starting at the buffer position,
+     * without copying. The position is advanced past the table.
+     */
+    public static StringTable read(ByteBuffer in) {
+        int count = in.getInt();
+        int slotCount = in.getInt();
+        int byteLength = in.getInt();
+        IntBuffer hashes = sliceInts(in, count);
+        IntBuffer offsets = sliceInts(in, count + 1);
+        IntBuffer slots = sliceInts(in, slotCount);
+        ByteBuffer bytes = in.slice(in.position(), byteLength);
+        in.position(in.position() + padded(byteLength));
+        return new StringTable(count, hashes, offsets, slots, bytes);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(slots.limit());
+        out.writeInt(bytes.limit());
+        writeInts(out, hashes);
+        writeInts(out, offsets);
+        writeInts(out, slots);
+        for (int i = 0; i < bytes.limit(); i++) {
+            out.writeByte(bytes.get(i));
+        }
+        for (int i = bytes.limit(); i < padded(bytes.limit()); i++) {
+            out.writeByte(0);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String get(int index) {
+        String s = decoded[index];
+        if (s == null) {
+            int from = offsets.get(index);
+            byte[] b = new byte[offsets.get(index + 1) - from];
+            bytes.get(from, b);
+            s = new String(b, StandardCharsets.UTF_8);
+            decoded[index] = s;
+        }
+        return s;
+    }
+
+    /**
+     * @return index of the value, or -1 if absent
+     */
+    public int indexOf(String value) {
+        if (value == null) return -1;
+        return indexOf(value, 0, value.length(), value.hashCode());
+    }
+
+    /**
+     * Index of the value equal to {@code source[start, start + length)}, without
+     * building the substring.
+     * @param hash {@link String#hashCode()} of the region, e.g. computed incrementally
+     * @return index of the value, or -1 if absent
+     */
+    public int indexOf(String source, int start, int length, int hash) {
+        if (count == 0) return -1;
+        int mask = slots.limit() - 1;
+        int slot = mix(hash) & mask;
+        int entry;
+        while ((entry = slots.get(slot)) != 0) {
+            int idx = entry - 1;
+            if (hashes.get(idx) == hash) {
+                String value = get(idx);
+                if (value.length() == length && value.regionMatches(0, source, start, length)) return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // -------- Buffer helpers --------
+
+    /**
+     * View the next n ints of the buffer in place and advance its position.
+     */
+    public static IntBuffer sliceInts(ByteBuffer in, int n) {
+        IntBuffer view = in.slice(in.position(), n * 4).asIntBuffer();
+        in.position(in.position() + n * 4);
+        return view;
+    }
+
+    public static void writeInts(DataOutput out, IntBuffer values) throws IOException {
+        for (int i = 0; i < values.limit(); i++) {
+            out.writeInt(values.get(i));
+        }
+    }
+
+    private static int padded(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
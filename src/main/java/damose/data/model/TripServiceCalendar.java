@@ -1,39 +1,222 @@
 package damose.data.model;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Maintains the active dates for each service_id from GTFS calendar data.
+ * Services have dense ids; each one is a bitset over the days of the feed's
+ * date range, so checking a service on a date is a single bit test.
+ * Dates outside a horizon given to the {@link Builder} are dropped, so open-ended
+ * periods (end dates like 20991231) cost no more than the horizon.
+ * Instances are immutable and built with {@link Builder}.
  */
-public class TripServiceCalendar {
+public final class TripServiceCalendar {
 
-    private final Map<String, Set<LocalDate>> serviceDates = new HashMap<>();
+    /** Id returned for unknown services. */
+    public static final int NONE = -1;
 
-    public void addServiceDate(String serviceId, LocalDate date) {
-        serviceDates.computeIfAbsent(serviceId, k -> new HashSet<>()).add(date);
-    }
+    private final StringDictionary serviceIds;
+    private final LocalDate horizonStart;
+    private final LocalDate horizonEnd;
+    private final long firstEpochDay;
+    private final int dayCount;
+    private final int wordsPerService;
+    // Bits of service s are words [s * wordsPerService, (s + 1) * wordsPerService)
+    private final long[] bits;
+
+    private TripServiceCalendar(Builder b) {
+        this.serviceIds = b.serviceIds;
+        this.horizonStart = LocalDate.ofEpochDay(b.horizonStart);
+        this.horizonEnd = LocalDate.ofEpochDay(b.horizonStart + b.horizonDays - 1);
+
+        // Trim the range to the days some service runs on
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (BitSet days : b.days) {
+            if (days.isEmpty()) continue;
+            first = Math.min(first, days.nextSetBit(0));
+            last = Math.max(last, days.length() - 1);
+        }
+        this.firstEpochDay = last < 0 ? 0 : b.horizonStart + first;
+        this.dayCount = last < 0 ? 0 : last - first + 1;
+        this.wordsPerService = (dayCount + 63) >>> 6;
+        this.bits = new long[serviceIds.size() * wordsPerService];
 
-    public void removeServiceDate(String serviceId, LocalDate date) {
-        Set<LocalDate> dates = serviceDates.get(serviceId);
-        if (dates != null) {
-            dates.remove(date);
-            if (dates.isEmpty()) {
-                serviceDates.remove(serviceId);
+        for (int s = 0; s < serviceIds.size(); s++) {
+            BitSet days = b.days.get(s);
+            for (int d = days.nextSetBit(0); d >= 0; d = days.nextSetBit(d + 1)) {
+                int day = d - first;
+                bits[s * wordsPerService + (day >>> 6)] |= 1L << day;
             }
         }
     }
 
+    public static TripServiceCalendar empty() {
+        return new Builder(LocalDate.EPOCH, LocalDate.EPOCH).build();
+    }
+
     public boolean serviceRunsOnDate(String serviceId, LocalDate date) {
-        Set<LocalDate> dates = serviceDates.get(serviceId);
-        return dates != null && dates.contains(date);
+        return serviceRunsOnDate(indexOfService(serviceId), date);
+    }
+
+    public boolean serviceRunsOnDate(int serviceIdx, LocalDate date) {
+        if (serviceIdx == NONE) return false;
+        long day = date.toEpochDay() - firstEpochDay;
+        if (day < 0 || day >= dayCount) return false;
+        return (bits[serviceIdx * wordsPerService + (int) (day >>> 6)] & (1L << day)) != 0;
+    }
+
+    /**
+     * Services running on a date, as a bitset over service ids.
+     */
+    public BitSet activeServices(LocalDate date) {
+        BitSet active = new BitSet(serviceCount());
+        for (int s = 0; s < serviceCount(); s++) {
+            if (serviceRunsOnDate(s, date)) active.set(s);
+        }
+        return active;
+    }
+
+    /**
+     * @return dense id of a service, or {@link #NONE} if the calendar does not list it
+     */
+    public int indexOfService(String serviceId) {
+        return serviceIds.find(serviceId);
+    }
+
+    public String serviceIdAt(int serviceIdx) {
+        return serviceIds.get(serviceIdx);
     }
 
     public int serviceCount() {
-        return serviceDates.size();
+        return serviceIds.size();
+    }
+
+    /**
+     * First day the calendar was allowed to hold; earlier dates were dropped.
+     */
+    public LocalDate getHorizonStart() {
+        return horizonStart;
+    }
+
+    /**
+     * Last day the calendar was allowed to hold; later dates were dropped.
+     */
+    public LocalDate getHorizonEnd() {
+        return horizonEnd;
+    }
+
+    /**
+     * @return first day of the date range, or null if the calendar is empty
+     */
+    public LocalDate getFirstDate() {
+        return dayCount == 0 ? null : LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    /**
+     * @return last day of the date range, or null if the calendar is empty
+     */
+    public LocalDate getLastDate() {
+        return dayCount == 0 ? null : LocalDate.ofEpochDay(firstEpochDay + dayCount - 1);
+    }
+
+    public Set<String> getServiceIds() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(serviceIds.values()));
     }
-}
 
+    /**
+     * Dates a service runs on, in order.
+     */
+    public Set<LocalDate> getServiceDates(String serviceId) {
+        int s = indexOfService(serviceId);
+        if (s == NONE) return Collections.emptySet();
+
+        Set<LocalDate> dates = new TreeSet<>();
+        for (int day = 0; day < dayCount; day++) {
+            if ((bits[s * wordsPerService + (day >>> 6)] & (1L << day)) != 0) {
+                dates.add(LocalDate.ofEpochDay(firstEpochDay + day));
+            }
+        }
+        return Collections.unmodifiableSet(dates);
+    }
+
+    /**
+     * Collects calendar.txt periods and calendar_dates.txt exceptions.
+     * Apply periods before exceptions, as GTFS exceptions override the weekly pattern.
+     * Dates are written straight into one bitset per service over the horizon days.
+     */
+    public static final class Builder {
+
+        private final StringDictionary serviceIds = new StringDictionary();
+        private final List<BitSet> days = new ArrayList<>();
+        private final long horizonStart;
+        private final int horizonDays;
+
+        /**
+         * @param horizonStart first date to keep (inclusive)
+         * @param horizonEnd last date to keep (inclusive)
+         */
+        public Builder(LocalDate horizonStart, LocalDate horizonEnd) {
+            this.horizonStart = horizonStart.toEpochDay();
+            this.horizonDays = (int) Math.max(1, horizonEnd.toEpochDay() - this.horizonStart + 1);
+        }
+
+        public void addServiceDate(String serviceId, LocalDate date) {
+            BitSet serviceDays = daysOf(serviceId);
+            int day = dayOf(date.toEpochDay());
+            if (day >= 0) serviceDays.set(day);
+        }
+
+        public void removeServiceDate(String serviceId, LocalDate date) {
+            BitSet serviceDays = daysOf(serviceId);
+            int day = dayOf(date.toEpochDay());
+            if (day >= 0) serviceDays.clear(day);
+        }
+
+        /**
+         * Add every date between start and end (inclusive) falling on one of the days,
+         * within the horizon.
+         */
+        public void addWeeklyService(String serviceId, Set<DayOfWeek> weekdays, LocalDate start, LocalDate end) {
+            BitSet serviceDays = daysOf(serviceId);
+            long from = Math.max(start.toEpochDay(), horizonStart);
+            long to = Math.min(end.toEpochDay(), horizonStart + horizonDays - 1);
+            for (long epochDay = from; epochDay <= to; epochDay++) {
+                // Epoch day 0 (1970-01-01) was a Thursday
+                if (weekdays.contains(DayOfWeek.of((int) Math.floorMod(epochDay + 3, 7L) + 1))) {
+                    serviceDays.set((int) (epochDay - horizonStart));
+                }
+            }
+        }
+
+        public int serviceCount() {
+            return serviceIds.size();
+        }
+
+        public TripServiceCalendar build() {
+            return new TripServiceCalendar(this);
+        }
+
+        private BitSet daysOf(String serviceId) {
+            int id = serviceIds.idOf(serviceId);
+            if (id == days.size()) days.add(new BitSet());
+            return days.get(id);
+        }
+
+        /**
+         * @return bit of an epoch day, or -1 outside the horizon
+         */
+        private int dayOf(long epochDay) {
+            long day = epochDay - horizonStart;
+            return day >= 0 && day < horizonDays ? (int) day : -1;
+        }
+    }
+}
@@ -8,11 +8,16 @@ public class TripUpdateRecord {
 
     private final String tripId;
     private final String stopId;
+    private final int stopIndex;
     private final long arrivalEpochSeconds;
 
-    public TripUpdateRecord(String tripId, String stopId, long arrivalEpochSeconds) {
+    /**
+     * @param stopIndex dense stop id in the static stop times table, or -1 if the stop is not in it
+     */
+    public TripUpdateRecord(String tripId, String stopId, int stopIndex, long arrivalEpochSeconds) {
         this.tripId = tripId;
         this.stopId = stopId;
+        this.stopIndex = stopIndex;
         this.arrivalEpochSeconds = arrivalEpochSeconds;
     }
 
@@ -24,6 +29,10 @@ public class TripUpdateRecord {
         return stopId;
     }
 
+    public int getStopIndex() {
+        return stopIndex;
+    }
+
     public long getArrivalEpochSeconds() {
         return arrivalEpochSeconds;
     }
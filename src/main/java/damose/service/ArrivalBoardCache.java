@@ -0,0 +1,116 @@
+package damose.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of computed arrival boards.
+ * Entries older than the maximum age are recomputed; the least recently read entry
+ * is dropped when the cache is full. Keys carry everything a board depends on, so
+ * entries never need updating, only discarding.
+ */
+public class ArrivalBoardCache<V> {
+
+    private final int maxEntries;
+    private final long maxAgeMillis;
+
+    private final Object lock = new Object();
+    private final Map<List<Object>, Entry<V>> entries;
+    private long hits;
+    private long misses;
+
+    public ArrivalBoardCache(int maxEntries, long maxAgeMillis) {
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        // Access order: iteration starts from the least recently read entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry<V>> eldest) {
+                return size() > ArrivalBoardCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cached board, or null if missing or expired
+     */
+    public V get(List<Object> key) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && now - entry.createdMillis > maxAgeMillis) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.value;
+        }
+    }
+
+    public void put(List<Object> key, V value) {
+        Entry<V> entry = new Entry<>(value, System.currentTimeMillis());
+        synchronized (lock) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Drop every entry, e.g. when new feed data makes them all stale.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (lock) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (lock) {
+            return misses;
+        }
+    }
+
+    /**
+     * Fraction of reads served from the cache since creation, 0 before any read.
+     */
+    public double getHitRate() {
+        synchronized (lock) {
+            long reads = hits + misses;
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "ArrivalBoardCache{entries=" + entries.size() + ", hits=" + hits + ", misses=" + misses
+                    + ", hitRate=" + Math.round(getHitRate() * 100) + "%}";
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long createdMillis;
+
+        Entry(V value, long createdMillis) {
+            this.value = value;
+            this.createdMillis = createdMillis;
+        }
+    }
+}
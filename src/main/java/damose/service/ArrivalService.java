@@ -2,108 +2,199 @@ package damose.service;
 
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import damose.config.AppConstants;
-import damose.data.mapper.StopTripMapper;
+import damose.data.mapper.DepartureIndex;
 import damose.data.mapper.TripIdUtils;
-import damose.data.mapper.TripMatcher;
-import damose.data.model.StopTime;
+import damose.data.mapper.TripVariantIndex;
+import damose.data.model.ArrivalPrediction;
+import damose.data.model.Departure;
+import damose.data.model.StopTimeTable;
 import damose.data.model.Trip;
-import damose.data.model.TripServiceCalendar;
 import damose.data.model.TripUpdateRecord;
 import damose.model.ConnectionMode;
 
 /**
  * Service for managing real-time and static arrivals.
- * Handles matching between RT and static data, time calculations and formatting.
+ * Handles matching between RT and static data and time calculations; results are
+ * typed predictions, formatted by the UI.
  */
 public class ArrivalService {
 
-    // Real-time map: normalizedTripKey -> (stopId -> arrivalEpochSeconds)
-    private final Map<String, Map<String, Long>> realtimeArrivals = new HashMap<>();
+    // Latest RT feed, replaced as a whole: readers never lock
+    private volatile RealtimeSnapshot realtime = RealtimeSnapshot.EMPTY;
+    // Trip variants of the static table the feed is resolved against, rebuilt on reload
+    private volatile TripVariantIndex tripVariants;
 
-    private final TripMatcher matcher;
-    private final StopTripMapper stopTripMapper;
-    private final TripServiceCalendar tripServiceCalendar;
+    // Computed boards, dropped on every new feed and static generation
+    private final ArrivalBoardCache<List<ArrivalPrediction>> boards = new ArrivalBoardCache<>(
+            AppConstants.ARRIVAL_CACHE_MAX_ENTRIES, AppConstants.ARRIVAL_CACHE_MAX_AGE_MS);
 
-    public ArrivalService(TripMatcher matcher, StopTripMapper stopTripMapper, 
-                         TripServiceCalendar tripServiceCalendar) {
-        this.matcher = matcher;
-        this.stopTripMapper = stopTripMapper;
-        this.tripServiceCalendar = tripServiceCalendar;
+    // Each query reads the static generation once and uses it throughout
+    private final Supplier<StaticData> staticData;
+
+    public ArrivalService(Supplier<StaticData> staticData) {
+        this.staticData = staticData;
     }
 
     /**
      * Update RT arrivals map with new data from feed.
+     * The map is built aside and resolved against the static trips, then published,
+     * so queries in progress keep reading the previous feed.
+     * @param stopTimes table the records' stop indexes refer to
      */
-    public void updateRealtimeArrivals(List<TripUpdateRecord> updates) {
-        synchronized (realtimeArrivals) {
-            realtimeArrivals.clear();
-            for (TripUpdateRecord u : updates) {
-                String rawFeedTrip = u.getTripId();
-                String normalizedKey = normalizeTripKey(rawFeedTrip);
-                Set<String> variants = TripIdUtils.generateVariants(normalizedKey);
-
-                for (String key : variants) {
-                    realtimeArrivals
-                        .computeIfAbsent(key, k -> new HashMap<>())
-                        .put(u.getStopId(), u.getArrivalEpochSeconds());
-                }
+    public void updateRealtimeArrivals(List<TripUpdateRecord> updates, StopTimeTable stopTimes) {
+        Map<String, Map<Integer, Long>> arrivals = new HashMap<>();
+        for (TripUpdateRecord u : updates) {
+            // Stops missing from the static table never match a static arrival
+            if (u.getStopIndex() == StopTimeTable.NONE) continue;
+            String rawFeedTrip = u.getTripId();
+            String normalizedKey = normalizeTripKey(rawFeedTrip);
+            Set<String> variants = TripIdUtils.generateVariants(normalizedKey);
+
+            for (String key : variants) {
+                arrivals
+                    .computeIfAbsent(key, k -> new HashMap<>())
+                    .put(u.getStopIndex(), u.getArrivalEpochSeconds());
             }
         }
+        TripVariantIndex variants = tripVariants;
+        if (variants == null || variants.getStopTimes() != stopTimes) {
+            variants = new TripVariantIndex(stopTimes);
+            tripVariants = variants;
+        }
+        realtime = new RealtimeSnapshot(arrivals, stopTimes, variants, realtime.generation + 1);
+        boards.invalidate();
     }
 
     /**
-     * Compute arrivals for a specific stop.
-     * @return List of formatted strings for UI
+     * Drop the boards of earlier static generations once a new one is published,
+     * so the cache stops keeping the old tables reachable.
      */
-    public List<String> computeArrivalsForStop(String stopId, ConnectionMode mode, long currentFeedTs) {
-        List<StopTime> times = stopTripMapper.getStopTimesForStop(stopId);
-        if (times == null || times.isEmpty()) {
-            return List.of("Nessun arrivo imminente");
-        }
+    public void invalidateBoards() {
+        boards.invalidate();
+    }
 
+    /**
+     * Hits and misses of the arrival boards cache.
+     */
+    public ArrivalBoardCache<List<ArrivalPrediction>> getBoardCache() {
+        return boards;
+    }
+
+    /**
+     * Next arrival of each route at a stop, soonest first: realtime when the feed
+     * predicts it, scheduled otherwise.
+     * Boards are cached by stop, mode, static generation, RT feed and minute of the query.
+     * @return arrivals expected within STATIC_WINDOW_MIN minutes, empty if none
+     */
+    public List<ArrivalPrediction> computeArrivalsForStop(String stopId, ConnectionMode mode) {
+        StaticData data = staticData.get();
         final long nowEpoch = Instant.now().getEpochSecond();
-        final LocalDate feedDate = Instant.ofEpochSecond(currentFeedTs)
-                .atZone(ZoneId.systemDefault()).toLocalDate();
+        final RealtimeSnapshot rt = realtime;
 
-        Map<String, RouteArrivalInfo> perRoute = new HashMap<>();
+        List<Object> cacheKey = nextArrivalsKey(data, rt, stopId, mode, nowEpoch);
+        List<ArrivalPrediction> cached = boards.get(cacheKey);
+        if (cached != null) return cached;
 
-        for (StopTime st : times) {
-            Trip trip = matcher.matchByTripId(st.getTripId());
-            if (trip == null) continue;
-            String routeId = trip.getRouteId();
+        List<ArrivalPrediction> arrivals = nextArrivals(data, rt, nextWindow(data, nowEpoch), stopId, mode, nowEpoch);
+        putBoard(cacheKey, data, arrivals);
+        return arrivals;
+    }
 
-            // Check active service
-            String serviceId = trip.getServiceId();
-            if (serviceId != null && !serviceId.isEmpty()) {
-                if (!tripServiceCalendar.serviceRunsOnDate(serviceId, feedDate)) {
-                    continue;
-                }
-            }
+    /**
+     * {@link #computeArrivalsForStop} for many stops at once, all against the same
+     * static data, RT feed and time.
+     * The service days of the window are resolved once; boards missing from the cache
+     * are computed in parallel on a bounded pool.
+     * @return arrivals by stop id, in the order of {@code stopIds}
+     */
+    public Map<String, List<ArrivalPrediction>> computeArrivalsForStops(Collection<String> stopIds,
+                                                                        ConnectionMode mode) {
+        StaticData data = staticData.get();
+        final long nowEpoch = Instant.now().getEpochSecond();
+        final RealtimeSnapshot rt = realtime;
+        final DepartureIndex.Window window = nextWindow(data, nowEpoch);
+
+        Map<String, CompletableFuture<List<ArrivalPrediction>>> boardsByStop = new LinkedHashMap<>();
+        for (String stopId : stopIds) {
+            if (boardsByStop.containsKey(stopId)) continue;
+            List<Object> cacheKey = nextArrivalsKey(data, rt, stopId, mode, nowEpoch);
+            List<ArrivalPrediction> cached = boards.get(cacheKey);
+            boardsByStop.put(stopId, cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : CompletableFuture.supplyAsync(() -> {
+                        List<ArrivalPrediction> arrivals = nextArrivals(data, rt, window, stopId, mode, nowEpoch);
+                        putBoard(cacheKey, data, arrivals);
+                        return arrivals;
+                    }, BatchPool.EXECUTOR));
+        }
 
-            // Static schedule
-            LocalTime arr = st.getArrivalTime();
-            if (arr == null) continue;
+        Map<String, List<ArrivalPrediction>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<ArrivalPrediction>>> e : boardsByStop.entrySet()) {
+            result.put(e.getKey(), e.getValue().join());
+        }
+        return Collections.unmodifiableMap(result);
+    }
 
-            long scheduledEpoch = computeScheduledEpochForFeed(st, currentFeedTs);
-            if (scheduledEpoch <= 0) continue;
+    /**
+     * Departures scheduled from 2 whole minutes ago to STATIC_WINDOW_MIN whole minutes from now.
+     */
+    private static DepartureIndex.Window nextWindow(StaticData data, long nowEpoch) {
+        return data.getDepartures().window(
+                nowEpoch - 3 * 60 + 1, nowEpoch + (AppConstants.STATIC_WINDOW_MIN + 1) * 60L - 1);
+    }
+
+    private static List<Object> nextArrivalsKey(StaticData data, RealtimeSnapshot rt, String stopId,
+                                                ConnectionMode mode, long nowEpoch) {
+        return Arrays.asList("next", data.getGeneration(), stopId, mode, rt.generation, nowEpoch / 60);
+    }
+
+    /**
+     * Cache a board unless its static generation was replaced while computing it:
+     * it would never be read again and would only keep that generation reachable.
+     */
+    private void putBoard(List<Object> key, StaticData data, List<ArrivalPrediction> board) {
+        if (staticData.get() == data) {
+            boards.put(key, board);
+        }
+    }
+
+    private List<ArrivalPrediction> nextArrivals(StaticData data, RealtimeSnapshot rt, DepartureIndex.Window window,
+                                                 String stopId, ConnectionMode mode, long nowEpoch) {
+        StopTimeTable table = data.getStopTimes();
+        int stopIdx = table.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE || table.stopRowsStart(stopIdx) == table.stopRowsEnd(stopIdx)) {
+            return List.of();
+        }
+        final int rtStopIdx = rt.stopIndexOf(table, stopIdx);
+
+        List<Departure> departures = data.getDepartures().departures(stopId, window, null);
 
-            long staticDiffMin = (scheduledEpoch - nowEpoch) / 60;
-            if (staticDiffMin < -2 || staticDiffMin > AppConstants.STATIC_WINDOW_MIN) continue;
+        Map<String, ArrivalPrediction> perRoute = new HashMap<>();
+
+        StopTimeTable.View st = table.view();
+        for (Departure dep : departures) {
+            st.moveTo(dep.getStopTimeRow());
 
             // RT prediction
-            Long predictedEpoch = (mode == ConnectionMode.ONLINE) 
-                ? lookupRealtimeArrivalEpochStrictByStop(st, stopId) 
+            Long predictedEpoch = (mode == ConnectionMode.ONLINE)
+                ? lookupRealtimeArrivalEpochStrictByStop(rt, table, st, rtStopIdx)
                 : null;
 
             // Sanity check on RT prediction
@@ -114,198 +205,101 @@ public class ArrivalService {
                 }
             }
 
-            RouteArrivalInfo candidate = new RouteArrivalInfo(routeId, st, scheduledEpoch, predictedEpoch);
-            RouteArrivalInfo current = perRoute.get(routeId);
-
-            if (current == null) {
-                perRoute.put(routeId, candidate);
-            } else {
-                long curKey = current.sortKey();
-                long candKey = candidate.sortKey();
-
-                if (candKey < curKey) {
-                    perRoute.put(routeId, candidate);
-                } else if (candidate.predictedEpoch != null && current.predictedEpoch == null) {
-                    if (candKey - curKey < 30 * 60) {
-                        perRoute.put(routeId, candidate);
-                    }
-                }
-            }
+            offerRouteArrival(perRoute, toPrediction(dep, st, predictedEpoch));
         }
 
-        List<String> arrivi = perRoute.values().stream()
-            .sorted(Comparator.comparingLong(RouteArrivalInfo::sortKey))
-            .map(this::formatArrivalInfo)
-            .collect(Collectors.toList());
+        List<ArrivalPrediction> arrivals = new ArrayList<>(perRoute.values());
+        arrivals.sort(Comparator.comparingLong(ArrivalPrediction::getExpectedEpoch));
+        return List.copyOf(arrivals);
+    }
+
+    /**
+     * Keep the best arrival per route: the earliest, unless a later one with an RT
+     * prediction is close enough.
+     */
+    private static void offerRouteArrival(Map<String, ArrivalPrediction> perRoute, ArrivalPrediction candidate) {
+        ArrivalPrediction current = perRoute.get(candidate.getRouteId());
 
-        if (arrivi.isEmpty()) {
-            arrivi = new ArrayList<>();
-            arrivi.add("Nessun arrivo imminente");
+        if (current == null) {
+            perRoute.put(candidate.getRouteId(), candidate);
+        } else {
+            long curKey = current.getExpectedEpoch();
+            long candKey = candidate.getExpectedEpoch();
+
+            if (candKey < curKey) {
+                perRoute.put(candidate.getRouteId(), candidate);
+            } else if (candidate.isRealtime() && !current.isRealtime()) {
+                if (candKey - curKey < 30 * 60) {
+                    perRoute.put(candidate.getRouteId(), candidate);
+                }
+            }
         }
-        return arrivi;
     }
-    
+
     /**
-     * Get all trips passing through a stop for the entire day.
-     * @return List of formatted strings with trip info
+     * Get all trips passing through a stop for the entire day, in scheduled order.
+     * Cached by stop, mode, static generation, RT feed and service day: the list does not depend on the minute.
+     * @return trips of the day, empty if none
      */
-    public List<String> getAllTripsForStopToday(String stopId, ConnectionMode mode, long currentFeedTs) {
-        List<StopTime> times = stopTripMapper.getStopTimesForStop(stopId);
-        if (times == null || times.isEmpty()) {
-            return List.of("Nessun passaggio programmato per oggi");
+    public List<ArrivalPrediction> getAllTripsForStopToday(String stopId, ConnectionMode mode, long currentFeedTs) {
+        StaticData data = staticData.get();
+        StopTimeTable table = data.getStopTimes();
+        int stopIdx = table.indexOfStop(stopId);
+        if (stopIdx == StopTimeTable.NONE || table.stopRowsStart(stopIdx) == table.stopRowsEnd(stopIdx)) {
+            return List.of();
         }
 
-        final long nowEpoch = Instant.now().getEpochSecond();
-        final LocalDate feedDate = Instant.ofEpochSecond(currentFeedTs)
-                .atZone(ZoneId.systemDefault()).toLocalDate();
-
-        List<TripArrivalInfo> allTrips = new ArrayList<>();
-
-        for (StopTime st : times) {
-            Trip trip = matcher.matchByTripId(st.getTripId());
-            if (trip == null) continue;
-            
-            String routeId = trip.getRouteId();
-            String tripId = st.getTripId();
-
-            // Check active service
-            String serviceId = trip.getServiceId();
-            if (serviceId != null && !serviceId.isEmpty()) {
-                if (!tripServiceCalendar.serviceRunsOnDate(serviceId, feedDate)) {
-                    continue;
-                }
-            }
+        final RealtimeSnapshot rt = realtime;
+        final int rtStopIdx = rt.stopIndexOf(table, stopIdx);
+        final LocalDate feedDate = data.getClock().dateOf(currentFeedTs);
+
+        List<Object> cacheKey = Arrays.asList("day", data.getGeneration(), stopId, mode, rt.generation, feedDate);
+        List<ArrivalPrediction> cached = boards.get(cacheKey);
+        if (cached != null) return cached;
 
-            LocalTime arr = st.getArrivalTime();
-            if (arr == null) continue;
+        // Ordered by scheduled time; trips past midnight stay at the end of the day
+        List<ArrivalPrediction> allTrips = new ArrayList<>();
 
-            long scheduledEpoch = computeScheduledEpochForFeed(st, currentFeedTs);
-            if (scheduledEpoch <= 0) continue;
+        StopTimeTable.View st = table.view();
+        for (Departure dep : data.getDepartures().departuresOn(stopId, feedDate, null)) {
+            st.moveTo(dep.getStopTimeRow());
 
             // RT prediction
             Long predictedEpoch = (mode == ConnectionMode.ONLINE) 
-                ? lookupRealtimeArrivalEpochStrictByStop(st, stopId) 
+                ? lookupRealtimeArrivalEpochStrictByStop(rt, table, st, rtStopIdx) 
                 : null;
 
-            allTrips.add(new TripArrivalInfo(routeId, tripId, trip.getTripHeadsign(), 
-                arr, scheduledEpoch, predictedEpoch));
+            allTrips.add(toPrediction(dep, st, predictedEpoch));
         }
 
-        // Sort by scheduled time
-        allTrips.sort(Comparator.comparing(t -> t.arrivalTime));
-
-        List<String> result = new ArrayList<>();
-        for (TripArrivalInfo info : allTrips) {
-            result.add(formatTripInfo(info, nowEpoch));
-        }
-
-        if (result.isEmpty()) {
-            result.add("Nessun passaggio programmato per oggi");
-        }
-        return result;
-    }
-    
-    private String formatTripInfo(TripArrivalInfo info, long nowEpoch) {
-        String timeStr = String.format("%02d:%02d", info.arrivalTime.getHour(), info.arrivalTime.getMinute());
-        String headsign = (info.headsign != null && !info.headsign.isEmpty()) ? info.headsign : "";
-        
-        if (info.predictedEpoch != null) {
-            long delayMin = (info.predictedEpoch - info.scheduledEpoch) / 60;
-            String rtStatus;
-            if (delayMin > 1) rtStatus = "+" + delayMin + " min";
-            else if (delayMin < -1) rtStatus = "-" + Math.abs(delayMin) + " min";
-            else rtStatus = "OK";
-            
-            return timeStr + " | " + info.routeId + " " + headsign + " [" + rtStatus + "]";
-        } else {
-            return timeStr + " | " + info.routeId + " " + headsign;
-        }
-    }
-    
-    /**
-     * Info about a single trip arrival.
-     */
-    private static class TripArrivalInfo {
-        final String routeId;
-        final String tripId;
-        final String headsign;
-        final LocalTime arrivalTime;
-        final long scheduledEpoch;
-        final Long predictedEpoch;
-
-        TripArrivalInfo(String routeId, String tripId, String headsign, 
-                       LocalTime arrivalTime, long scheduledEpoch, Long predictedEpoch) {
-            this.routeId = routeId;
-            this.tripId = tripId;
-            this.headsign = headsign;
-            this.arrivalTime = arrivalTime;
-            this.scheduledEpoch = scheduledEpoch;
-            this.predictedEpoch = predictedEpoch;
-        }
+        allTrips = List.copyOf(allTrips);
+        putBoard(cacheKey, data, allTrips);
+        return allTrips;
     }
 
-    private String formatArrivalInfo(RouteArrivalInfo info) {
-        long now = Instant.now().getEpochSecond();
-        
-        if (info.predictedEpoch != null) {
-            // RT mode: use predicted epoch
-            long diffFromNowMin = Math.max(0, (info.predictedEpoch - now) / 60);
-            long delayMin = (info.predictedEpoch - info.scheduledEpoch) / 60;
-            String status;
-            if (delayMin > 1) status = "ritardo di " + delayMin + " min";
-            else if (delayMin < -1) status = "anticipo di " + Math.abs(delayMin) + " min";
-            else status = "in orario";
-
-            if (diffFromNowMin <= AppConstants.IN_ARRIVO_THRESHOLD_MIN) {
-                return info.routeId + " - In arrivo (" + status + ")";
-            } else {
-                return info.routeId + " - " + diffFromNowMin + " min (" + status + ")";
-            }
-        } else {
-            // Static mode: use scheduledEpoch (not LocalTime) for consistency
-            long diffStaticMin = Math.max(0, (info.scheduledEpoch - now) / 60);
-            
-            if (diffStaticMin <= AppConstants.IN_ARRIVO_THRESHOLD_MIN) {
-                return info.routeId + " - In arrivo (statico)";
-            } else {
-                return info.routeId + " - " + diffStaticMin + " min (statico)";
-            }
-        }
+    private static ArrivalPrediction toPrediction(Departure dep, StopTimeTable.View st, Long predictedEpoch) {
+        Trip trip = dep.getTrip();
+        return new ArrivalPrediction(trip.getRouteId(), st.getTripId(), trip.getTripHeadsign(),
+                dep.getArrivalSeconds(), dep.getScheduledEpoch(), predictedEpoch);
     }
 
-    private Long lookupRealtimeArrivalEpochStrictByStop(StopTime st, String stopId) {
-        String rawStaticTrip = st.getTripId();
-        String normalizedStaticKey = normalizeTripKey(rawStaticTrip);
-        Set<String> staticVariants = TripIdUtils.generateVariants(normalizedStaticKey);
-
-        synchronized (realtimeArrivals) {
-            // Direct match on variants and exact stopId
-            for (String v : staticVariants) {
-                Map<String, Long> byStop = realtimeArrivals.get(v);
-                if (byStop == null) continue;
-                Long direct = byStop.get(stopId);
-                if (direct != null) {
-                    return direct;
-                }
-            }
-
-            // Fuzzy: search RT keys that contain static variant
-            for (String key : realtimeArrivals.keySet()) {
-                for (String v : staticVariants) {
-                    if (key == null || v == null) continue;
-                    if (key.contains(v) || key.endsWith(v)) {
-                        Map<String, Long> candidate = realtimeArrivals.get(key);
-                        if (candidate == null) continue;
-                        Long cand = candidate.get(stopId);
-                        if (cand != null) {
-                            return cand;
-                        }
-                    }
-                }
+    /**
+     * RT arrival at a stop for the trip of a stop time, from the first of the trip's
+     * resolved RT keys that has one.
+     */
+    private Long lookupRealtimeArrivalEpochStrictByStop(RealtimeSnapshot rt, StopTimeTable table,
+                                                       StopTimeTable.View st, int stopIdx) {
+        if (stopIdx == StopTimeTable.NONE) return null;
+        int tripIdx = rt.tripIndexOf(table, st.getTripIndex());
+        if (tripIdx == StopTimeTable.NONE) return null;
+
+        for (int pos = rt.resolution.candidatesStart(tripIdx); pos < rt.resolution.candidatesEnd(tripIdx); pos++) {
+            long cand = rt.arrivalEpoch(rt.resolution.keyAt(pos), stopIdx);
+            if (cand != RealtimeSnapshot.NO_ARRIVAL) {
+                return cand;
             }
-
-            return null;
         }
+        return null;
     }
 
     private String normalizeTripKey(String rawTripId) {
@@ -317,46 +311,101 @@ public class ArrivalService {
         return simple;
     }
 
-    private long computeScheduledEpochForFeed(StopTime st, long feedEpochSeconds) {
-        LocalTime scheduled = st.getArrivalTime();
-        if (scheduled == null) return -1;
-        ZoneId zone = ZoneId.systemDefault();
-        Instant feedInstant = Instant.ofEpochSecond(feedEpochSeconds);
-        LocalDate feedDate = feedInstant.atZone(zone).toLocalDate();
-
-        long best = -1;
-        long bestDiff = Long.MAX_VALUE;
-        for (int delta = -1; delta <= 1; delta++) {
-            LocalDate candidateDate = feedDate.plusDays(delta);
-            Instant candInstant = scheduled.atDate(candidateDate).atZone(zone).toInstant();
-            long diff = Math.abs(candInstant.getEpochSecond() - feedEpochSeconds);
-            if (diff < bestDiff) {
-                bestDiff = diff;
-                best = candInstant.getEpochSecond();
-            }
-        }
-        return best;
+    /**
+     * Pool computing the boards of a batch, a few stops at a time. Created on the first
+     * batch and shared by every service; its threads are daemons, so it is never shut down.
+     */
+    private static final class BatchPool {
+        private static final AtomicInteger threadCount = new AtomicInteger();
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(AppConstants.ARRIVAL_BATCH_THREADS, r -> {
+            Thread t = new Thread(r, "ArrivalBatch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     /**
-     * Info about an arrival for a specific route.
+     * Immutable RT arrivals of one feed: RT keys (normalizedTripKey variants) with their
+     * stop index -> arrivalEpochSeconds, and the keys resolved for each trip of the
+     * stop times table that indexes both.
      */
-    private static class RouteArrivalInfo {
-        final String routeId;
-        final StopTime stopTime;
-        final long scheduledEpoch;
-        final Long predictedEpoch;
-
-        RouteArrivalInfo(String routeId, StopTime stopTime, long scheduledEpoch, Long predictedEpoch) {
-            this.routeId = routeId;
-            this.stopTime = stopTime;
-            this.scheduledEpoch = scheduledEpoch;
-            this.predictedEpoch = predictedEpoch;
+    private static final class RealtimeSnapshot {
+        static final RealtimeSnapshot EMPTY = new RealtimeSnapshot();
+        static final long NO_ARRIVAL = Long.MIN_VALUE;
+
+        // Increases with every feed, for cache keys
+        final long generation;
+        // Stops of RT key k are stopIndexes[keyOffsets[k] .. keyOffsets[k + 1]), sorted,
+        // with their arrival at the same positions of arrivalEpochs
+        private final int[] keyOffsets;
+        private final int[] stopIndexes;
+        private final long[] arrivalEpochs;
+        final TripVariantIndex.Resolution resolution;
+        final StopTimeTable stops;
+
+        private RealtimeSnapshot() {
+            this.keyOffsets = new int[1];
+            this.stopIndexes = new int[0];
+            this.arrivalEpochs = new long[0];
+            this.resolution = TripVariantIndex.Resolution.EMPTY;
+            this.stops = null;
+            this.generation = 0;
         }
 
-        long sortKey() {
-            return predictedEpoch != null ? predictedEpoch : scheduledEpoch;
+        RealtimeSnapshot(Map<String, Map<Integer, Long>> arrivals, StopTimeTable stops, TripVariantIndex variants,
+                         long generation) {
+            int total = 0;
+            for (Map<Integer, Long> byStop : arrivals.values()) {
+                total += byStop.size();
+            }
+            // Key order is the order fuzzy matches are tried in
+            List<String> keys = new ArrayList<>(arrivals.size());
+            this.keyOffsets = new int[arrivals.size() + 1];
+            this.stopIndexes = new int[total];
+            this.arrivalEpochs = new long[total];
+            int k = 0, n = 0;
+            for (Map.Entry<String, Map<Integer, Long>> e : arrivals.entrySet()) {
+                keys.add(e.getKey());
+                Map<Integer, Long> byStop = e.getValue();
+                int from = n;
+                for (Integer stopIdx : byStop.keySet()) {
+                    stopIndexes[n++] = stopIdx;
+                }
+                Arrays.sort(stopIndexes, from, n);
+                for (int i = from; i < n; i++) {
+                    arrivalEpochs[i] = byStop.get(stopIndexes[i]);
+                }
+                keyOffsets[++k] = n;
+            }
+            this.resolution = variants.resolve(keys);
+            this.stops = stops;
+            this.generation = generation;
+        }
+
+        /**
+         * RT arrival of a key at a stop of the table the arrivals were keyed with,
+         * {@link #NO_ARRIVAL} if the feed has none.
+         */
+        long arrivalEpoch(int key, int stopIdx) {
+            int i = Arrays.binarySearch(stopIndexes, keyOffsets[key], keyOffsets[key + 1], stopIdx);
+            return i < 0 ? NO_ARRIVAL : arrivalEpochs[i];
+        }
+
+        /**
+         * Index of a stop in the table the arrivals were keyed with; the two differ
+         * only briefly after a static reload.
+         */
+        int stopIndexOf(StopTimeTable table, int stopIdx) {
+            if (stops == null || stops == table) return stopIdx;
+            return stops.indexOfStop(table.stopIdAt(stopIdx));
+        }
+
+        /**
+         * Index of a trip in the table the keys were resolved against, as {@link #stopIndexOf}.
+         */
+        int tripIndexOf(StopTimeTable table, int tripIdx) {
+            if (stops == null || stops == table) return tripIdx;
+            return stops.indexOfTrip(table.tripIdAt(tripIdx));
         }
     }
 }
-
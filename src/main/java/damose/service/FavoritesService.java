@@ -10,6 +10,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import damose.data.model.Line;
 import damose.data.model.Stop;
 import damose.database.SessionManager;
 
@@ -22,7 +23,7 @@ public final class FavoritesService {
     private static final Set<String> favoriteStopIds = new HashSet<>();
     private static final Set<String> favoriteLineIds = new HashSet<>();
     private static List<Stop> allStopsCache = new ArrayList<>();
-    private static List<Stop> allLinesCache = new ArrayList<>();
+    private static List<Line> allLinesCache = new ArrayList<>();
     private static Runnable onFavoritesChanged;
 
     private FavoritesService() {
@@ -39,11 +40,12 @@ public final class FavoritesService {
     /**
      * Initialize the service with the full list of stops and lines.
      */
-    public static void init(List<Stop> allStops, List<Stop> allLines) {
+    public static void init(List<Stop> allStops, List<Line> allLines) {
         allStopsCache = new ArrayList<>(allStops);
         allLinesCache = new ArrayList<>(allLines);
         loadFavorites();
         loadLineFavorites();
+        migrateLegacyLineIds();
     }
 
     /**
@@ -121,25 +123,16 @@ public final class FavoritesService {
     /**
      * Get all favorite lines.
      */
-    public static List<Stop> getFavoriteLines() {
-        List<Stop> favorites = new ArrayList<>();
-        for (Stop line : allLinesCache) {
-            if (favoriteLineIds.contains(line.getStopId())) {
+    public static List<Line> getFavoriteLines() {
+        List<Line> favorites = new ArrayList<>();
+        for (Line line : allLinesCache) {
+            if (favoriteLineIds.contains(line.getId())) {
                 favorites.add(line);
             }
         }
         return favorites;
     }
-    
-    /**
-     * Get all favorites (stops + lines).
-     */
-    public static List<Stop> getAllFavorites() {
-        List<Stop> all = new ArrayList<>();
-        all.addAll(getFavoriteStops());
-        all.addAll(getFavoriteLines());
-        return all;
-    }
+
 
     /**
      * Get count of favorites.
@@ -287,6 +280,25 @@ public final class FavoritesService {
         }
     }
 
+    /**
+     * Line favorites used to be saved as "fake-" + route id, " - " and headsign
+     * without spaces; rewrite them with the current line ids.
+     */
+    private static void migrateLegacyLineIds() {
+        boolean changed = false;
+        for (Line line : allLinesCache) {
+            String headsign = line.getHeadsign() != null ? line.getHeadsign() : "";
+            String legacyId = "fake-" + (line.getRouteId() + " - " + headsign).replace(" ", "");
+            if (favoriteLineIds.remove(legacyId)) {
+                favoriteLineIds.add(line.getId());
+                changed = true;
+            }
+        }
+        if (changed) {
+            saveLineFavorites();
+        }
+    }
+
     private static void saveLineFavorites() {
         File file = getLineFavoritesFile();
         
@@ -9,6 +9,7 @@ import com.google.transit.realtime.GtfsRealtime;
 
 import damose.data.mapper.StopTripMapper;
 import damose.data.mapper.TripIdUtils;
+import damose.data.model.StopTimeTable;
 import damose.data.model.TripUpdateRecord;
 import damose.data.model.VehiclePosition;
 
@@ -29,6 +30,7 @@ public final class GtfsParser {
                                                           Long feedHeaderTs) {
         List<TripUpdateRecord> updates = new ArrayList<>();
         if (feed == null) return updates;
+        StopTimeTable stopTimes = stopTripMapper.getStopTimes();
 
         for (GtfsRealtime.FeedEntity entity : feed.getEntityList()) {
             if (!entity.hasTripUpdate()) continue;
@@ -52,16 +54,18 @@ public final class GtfsParser {
                 // Extract stopId or map from stop_sequence
                 String stopId = (stu.hasStopId() ? stu.getStopId().trim() : null);
                 boolean hadStopId = stopId != null && !stopId.isBlank();
+                int stopIdx = hadStopId ? stopTimes.indexOfStop(stopId) : StopTimeTable.NONE;
                 if (!hadStopId && stu.hasStopSequence() && rawTripId != null) {
                     int seq = stu.getStopSequence();
-                    String mapped = stopTripMapper.getStopIdByTripAndSequence(rawTripId, seq);
-                    if (mapped == null || mapped.isBlank()) {
-                        mapped = stopTripMapper.getStopIdByTripAndSequence(simple, seq);
-                    }
-                    if (mapped != null && !mapped.isBlank()) {
-                        stopId = mapped;
+                    stopIdx = stopTripMapper.getStopIndexByTripAndSequence(rawTripId, seq);
+                    if (stopIdx == StopTimeTable.NONE) {
+                        stopIdx = stopTripMapper.getStopIndexByTripAndSequence(simple, seq);
                     }
                 }
+                if (stopIdx != StopTimeTable.NONE) {
+                    // Share the static instance instead of keeping one string per update
+                    stopId = stopTimes.stopIdAt(stopIdx);
+                }
 
                 // Time: prefer ARRIVAL, fallback to DEPARTURE
                 long rawTime = -1;
@@ -73,7 +77,7 @@ public final class GtfsParser {
 
                 long arrivalEpoch = normalizeEpoch(rawTime);
                 if (stopId != null && !stopId.isBlank() && arrivalEpoch > 0) {
-                    updates.add(new TripUpdateRecord(rawTripId, stopId, arrivalEpoch));
+                    updates.add(new TripUpdateRecord(rawTripId, stopId, stopIdx, arrivalEpoch));
                 }
             }
         }
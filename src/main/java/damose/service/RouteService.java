@@ -1,51 +1,204 @@
 package damose.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import damose.data.mapper.LineSearchIndex;
+import damose.data.model.Line;
+import damose.data.model.Route;
 import damose.data.model.Stop;
-import damose.data.model.StopTime;
+import damose.data.model.StopPattern;
+import damose.data.model.StopTimeTable;
 import damose.data.model.Trip;
 
 /**
  * Service for managing route-related operations.
- * Provides ordered stop sequences for bus lines.
+ * Holds the route catalog and the bus lines (route and headsign) offered to the user,
+ * and provides ordered stop sequences for them.
+ * At construction trips are grouped into distinct stop patterns per
+ * route, direction and headsign; route queries are then map lookups returning
+ * precomputed immutable lists. Route ids and headsigns match case-insensitively;
+ * trips whose headsigns differ only in case form one line.
+ * Lines are searched through a {@link LineSearchIndex} built over the catalog.
  */
 public class RouteService {
 
-    private final List<Trip> trips;
-    private final List<StopTime> stopTimes;
+    private final StopTimeTable stopTimes;
     private final Map<String, Stop> stopsById;
 
-    public RouteService(List<Trip> trips, List<StopTime> stopTimes, List<Stop> stops) {
-        this.trips = trips;
+    private final Map<String, Route> routesById = new LinkedHashMap<>();
+    private final List<Line> lines = new ArrayList<>();
+    private final Map<String, Line> linesById = new HashMap<>();
+    private final Map<String, Map<String, Line>> linesByRouteAndHeadsign = new HashMap<>();
+    private final LineSearchIndex lineIndex;
+
+    private final Map<String, List<Trip>> tripsByRoute = new HashMap<>();
+    private final Map<String, List<String>> headsignsByRoute = new HashMap<>();
+    // Patterns ordered by trip count, most common first
+    private final Map<String, List<StopPattern>> patternsByRoute = new HashMap<>();
+    private final Map<String, Map<String, List<StopPattern>>> patternsByRouteAndHeadsign = new HashMap<>();
+    // Pattern with the most stops of each route
+    private final Map<String, StopPattern> longestPatternByRoute = new HashMap<>();
+
+    public RouteService(List<Route> routes, List<Trip> trips, StopTimeTable stopTimes, List<Stop> stops) {
         this.stopTimes = stopTimes;
         this.stopsById = stops.stream()
                 .collect(Collectors.toMap(Stop::getStopId, s -> s, (a, b) -> a));
+        for (Route route : routes) {
+            routesById.putIfAbsent(key(route.getRouteId()), route);
+        }
+
+        Map<String, Set<String>> headsigns = new HashMap<>();
+        // Trips of each line by route and headsign keys, in feed order of their first trip
+        Map<List<String>, List<Trip>> tripsByLineKey = new LinkedHashMap<>();
+        Map<PatternKey, PatternKey> patterns = new LinkedHashMap<>();
+        for (Trip trip : trips) {
+            String routeKey = key(trip.getRouteId());
+            tripsByRoute.computeIfAbsent(routeKey, k -> new ArrayList<>()).add(trip);
+            headsigns.computeIfAbsent(routeKey, k -> new LinkedHashSet<>()).add(trip.getTripHeadsign());
+            tripsByLineKey.computeIfAbsent(Arrays.asList(routeKey, key(trip.getTripHeadsign())),
+                    k -> new ArrayList<>()).add(trip);
+
+            int tripIdx = stopTimes.indexOfTrip(trip.getTripId());
+            if (tripIdx == StopTimeTable.NONE) continue;
+            patterns.computeIfAbsent(new PatternKey(trip, stopIndexesOf(tripIdx)), k -> k).tripCount++;
+        }
+
+        Map<Line, List<Trip>> tripsByLine = new LinkedHashMap<>();
+        for (List<Trip> lineTrips : tripsByLineKey.values()) {
+            tripsByLine.put(addLine(lineTrips), Collections.unmodifiableList(lineTrips));
+        }
+        this.lineIndex = new LineSearchIndex(tripsByLine);
+
+        tripsByRoute.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        headsigns.forEach((k, v) -> headsignsByRoute.put(k, Collections.unmodifiableList(new ArrayList<>(v))));
+
+        for (PatternKey p : patterns.keySet()) {
+            StopPattern pattern = new StopPattern(p.routeId, p.directionId, p.headsign, toStops(p.stops),
+                    p.stops.length, p.tripCount, p.firstTrip);
+            String routeKey = key(p.routeId);
+            patternsByRoute.computeIfAbsent(routeKey, k -> new ArrayList<>()).add(pattern);
+            patternsByRouteAndHeadsign.computeIfAbsent(routeKey, k -> new HashMap<>())
+                    .computeIfAbsent(key(p.headsign), k -> new ArrayList<>()).add(pattern);
+
+            StopPattern longest = longestPatternByRoute.get(routeKey);
+            if (longest == null || pattern.getStopTimeCount() > longest.getStopTimeCount()) {
+                longestPatternByRoute.put(routeKey, pattern);
+            }
+        }
+
+        patternsByRoute.replaceAll((k, v) -> byTripCount(v));
+        patternsByRouteAndHeadsign.values().forEach(m -> m.replaceAll((k, v) -> byTripCount(v)));
+
+        System.out.println("RouteService initialized: routes=" + routesById.size()
+                + " lines=" + lines.size() + " patterns=" + patterns.size());
+    }
+
+    /**
+     * Add the line of a group of trips, named after the first one.
+     */
+    private Line addLine(List<Trip> lineTrips) {
+        Trip first = lineTrips.get(0);
+        String routeKey = key(first.getRouteId());
+        Route route = routesById.computeIfAbsent(routeKey, k -> Route.unlisted(first.getRouteId()));
+        Line line = new Line(route, first.getTripHeadsign(), lineTrips.size());
+        lines.add(line);
+        linesById.put(line.getId(), line);
+        linesByRouteAndHeadsign.computeIfAbsent(routeKey, k -> new HashMap<>())
+                .put(key(first.getTripHeadsign()), line);
+        return line;
+    }
+
+    /**
+     * Route by id, or null if neither routes.txt nor trips.txt know it.
+     */
+    public Route getRoute(String routeId) {
+        return routesById.get(key(routeId));
+    }
+
+    /**
+     * All routes: those of routes.txt, then routes only referenced by trips.
+     */
+    public List<Route> getRoutes() {
+        return Collections.unmodifiableList(new ArrayList<>(routesById.values()));
+    }
+
+    /**
+     * All lines (route and headsign) in feed order.
+     */
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Line of a route towards a headsign, or null.
+     */
+    public Line getLine(String routeId, String headsign) {
+        return linesByRouteAndHeadsign.getOrDefault(key(routeId), Collections.emptyMap()).get(key(headsign));
+    }
+
+    /**
+     * Lines matching the query, best first, see {@link LineSearchIndex#search}.
+     */
+    public List<Line> searchLines(String query, int limit) {
+        return lineIndex.search(query, limit);
+    }
+
+    /**
+     * Trips whose route id, headsign or short name contains the query.
+     */
+    public List<Trip> searchTrips(String query) {
+        return lineIndex.searchTrips(query);
+    }
+
+    /**
+     * Line by {@link Line#getId()}, or null.
+     */
+    public Line getLineById(String lineId) {
+        return linesById.get(lineId);
     }
 
     /**
-     * Find a representative trip for a line (routeId + headsign).
+     * Find a representative trip for a line (routeId + headsign):
+     * the first trip of its most common stop pattern.
      */
     public Trip findRepresentativeTrip(String routeId, String headsign) {
-        return trips.stream()
-                .filter(t -> t.getRouteId().equalsIgnoreCase(routeId))
-                .filter(t -> headsign == null || t.getTripHeadsign().equalsIgnoreCase(headsign))
-                .findFirst()
-                .orElse(null);
+        List<StopPattern> patterns = getPatterns(routeId, headsign);
+        return patterns.isEmpty() ? null : patterns.get(0).getRepresentativeTrip();
     }
 
     /**
      * Find all trips for a routeId.
      */
     public List<Trip> findTripsByRouteId(String routeId) {
-        return trips.stream()
-                .filter(t -> t.getRouteId().equalsIgnoreCase(routeId))
-                .collect(Collectors.toList());
+        return tripsByRoute.getOrDefault(key(routeId), Collections.emptyList());
+    }
+
+    /**
+     * Stop patterns of a route, most common first.
+     */
+    public List<StopPattern> getPatterns(String routeId) {
+        return patternsByRoute.getOrDefault(key(routeId), Collections.emptyList());
+    }
+
+    /**
+     * Stop patterns of a route with the given headsign (any headsign if null), most common first.
+     */
+    public List<StopPattern> getPatterns(String routeId, String headsign) {
+        if (headsign == null) return getPatterns(routeId);
+        return patternsByRouteAndHeadsign.getOrDefault(key(routeId), Collections.emptyMap())
+                .getOrDefault(key(headsign), Collections.emptyList());
     }
 
     /**
@@ -53,68 +206,98 @@ public class RouteService {
      */
     public List<Stop> getStopsForTrip(String tripId) {
         if (tripId == null) return Collections.emptyList();
-
-        List<StopTime> tripStopTimes = stopTimes.stream()
-                .filter(st -> st.getTripId().equals(tripId))
-                .sorted(Comparator.comparingInt(StopTime::getStopSequence))
-                .collect(Collectors.toList());
-
-        List<Stop> orderedStops = new ArrayList<>();
-        for (StopTime st : tripStopTimes) {
-            Stop stop = stopsById.get(st.getStopId());
-            if (stop != null) {
-                orderedStops.add(stop);
-            }
-        }
-
-        return orderedStops;
+        int tripIdx = stopTimes.indexOfTrip(tripId);
+        if (tripIdx == StopTimeTable.NONE) return Collections.emptyList();
+        return toStops(stopIndexesOf(tripIdx));
     }
 
     /**
      * Get ordered list of stops for a route.
-     * Uses the trip with most stops as representative.
+     * Uses the pattern with most stops as representative.
      */
     public List<Stop> getStopsForRoute(String routeId) {
-        if (routeId == null) return Collections.emptyList();
-
-        List<Trip> routeTrips = findTripsByRouteId(routeId);
-        if (routeTrips.isEmpty()) return Collections.emptyList();
-
-        String bestTripId = null;
-        int maxStops = 0;
-
-        for (Trip trip : routeTrips) {
-            long count = stopTimes.stream()
-                    .filter(st -> st.getTripId().equals(trip.getTripId()))
-                    .count();
-            if (count > maxStops) {
-                maxStops = (int) count;
-                bestTripId = trip.getTripId();
-            }
-        }
-
-        if (bestTripId == null) return Collections.emptyList();
-        return getStopsForTrip(bestTripId);
+        StopPattern longest = longestPatternByRoute.get(key(routeId));
+        return longest == null ? Collections.emptyList() : longest.getStops();
     }
 
     /**
      * Get ordered list of stops for a route with specific direction.
      */
     public List<Stop> getStopsForRouteAndHeadsign(String routeId, String headsign) {
-        Trip trip = findRepresentativeTrip(routeId, headsign);
-        if (trip == null) return Collections.emptyList();
-        return getStopsForTrip(trip.getTripId());
+        List<StopPattern> patterns = getPatterns(routeId, headsign);
+        return patterns.isEmpty() ? Collections.emptyList() : patterns.get(0).getStops();
     }
 
     /**
      * Get all headsigns for a route.
      */
     public List<String> getHeadsignsForRoute(String routeId) {
-        return trips.stream()
-                .filter(t -> t.getRouteId().equalsIgnoreCase(routeId))
-                .map(Trip::getTripHeadsign)
-                .distinct()
-                .collect(Collectors.toList());
+        return headsignsByRoute.getOrDefault(key(routeId), Collections.emptyList());
     }
-}
 
+    private int[] stopIndexesOf(int tripIdx) {
+        int from = stopTimes.tripRowsStart(tripIdx);
+        int[] stops = new int[stopTimes.tripRowsEnd(tripIdx) - from];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = stopTimes.getStopIndex(stopTimes.tripRowAt(from + i));
+        }
+        return stops;
+    }
+
+    private List<Stop> toStops(int[] stopIndexes) {
+        List<Stop> orderedStops = new ArrayList<>(stopIndexes.length);
+        for (int stopIdx : stopIndexes) {
+            Stop stop = stopsById.get(stopTimes.stopIdAt(stopIdx));
+            if (stop != null) {
+                orderedStops.add(stop);
+            }
+        }
+        return orderedStops;
+    }
+
+    private static List<StopPattern> byTripCount(List<StopPattern> patterns) {
+        patterns.sort(Comparator.comparingInt(StopPattern::getTripCount).reversed());
+        return Collections.unmodifiableList(patterns);
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Identity of a stop pattern; also counts the trips following it.
+     */
+    private static final class PatternKey {
+        final String routeId;
+        final int directionId;
+        final String headsign;
+        final int[] stops;
+        final int hash;
+        final Trip firstTrip;
+        int tripCount;
+
+        PatternKey(Trip trip, int[] stops) {
+            this.routeId = trip.getRouteId();
+            this.directionId = trip.getDirectionId();
+            this.headsign = trip.getTripHeadsign();
+            this.stops = stops;
+            this.firstTrip = trip;
+            this.hash = Objects.hash(routeId, directionId, headsign) * 31 + Arrays.hashCode(stops);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PatternKey)) return false;
+            PatternKey k = (PatternKey) o;
+            return hash == k.hash && directionId == k.directionId
+                    && Objects.equals(routeId, k.routeId) && Objects.equals(headsign, k.headsign)
+                    && Arrays.equals(stops, k.stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
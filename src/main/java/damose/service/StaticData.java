@@ -0,0 +1,147 @@
+package damose.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import damose.data.mapper.ActiveTripIndex;
+import damose.data.mapper.DepartureIndex;
+import damose.data.mapper.StopRouteIndex;
+import damose.data.mapper.StopSpatialIndex;
+import damose.data.mapper.StopTripMapper;
+import damose.data.mapper.TripMatcher;
+import damose.data.model.Route;
+import damose.data.model.ServiceDayClock;
+import damose.data.model.ShapeTable;
+import damose.data.model.Stop;
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+import damose.data.model.TripServiceCalendar;
+
+/**
+ * Immutable bundle of the static GTFS data and the indexes built from it.
+ * Each instance is one generation; a new feed produces a new instance.
+ */
+public final class StaticData {
+
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final long generation = GENERATIONS.incrementAndGet();
+
+    private final List<Stop> stops;
+    private final List<Route> routes;
+    private final List<Trip> trips;
+    private final StopTimeTable stopTimes;
+    private final ShapeTable shapes;
+    private final TripServiceCalendar calendar;
+    private final ServiceDayClock clock;
+    private final ActiveTripIndex activeTrips;
+    private final TripMatcher matcher;
+    private final StopTripMapper stopTripMapper;
+    private final RouteService routeService;
+    private final DepartureIndex departures;
+    private final StopRouteIndex stopRoutes;
+    private final StopSpatialIndex stopIndex;
+
+    public StaticData(List<Stop> stops, List<Route> routes, List<Trip> trips, StopTimeTable stopTimes,
+                      ShapeTable shapes, TripServiceCalendar calendar, ServiceDayClock clock,
+                      ActiveTripIndex activeTrips, TripMatcher matcher,
+                      StopTripMapper stopTripMapper, RouteService routeService,
+                      StopRouteIndex stopRoutes) {
+        this.stops = List.copyOf(stops);
+        this.routes = List.copyOf(routes);
+        this.trips = List.copyOf(trips);
+        this.stopTimes = stopTimes;
+        this.shapes = shapes;
+        this.calendar = calendar;
+        this.clock = clock;
+        this.activeTrips = activeTrips;
+        this.matcher = matcher;
+        this.stopTripMapper = stopTripMapper;
+        this.routeService = routeService;
+        this.departures = new DepartureIndex(stopTimes, stopTripMapper, activeTrips, clock);
+        this.stopRoutes = stopRoutes;
+        this.stopIndex = new StopSpatialIndex(this.stops);
+    }
+
+    // -------- Getters --------
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    /**
+     * Stops by location, for nearest, radius and bounding-box queries.
+     */
+    public StopSpatialIndex getStopIndex() {
+        return stopIndex;
+    }
+
+    /**
+     * Routes as listed in routes.txt; see {@link RouteService} for lookups.
+     */
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public List<Trip> getTrips() {
+        return trips;
+    }
+
+    public StopTimeTable getStopTimes() {
+        return stopTimes;
+    }
+
+    /**
+     * Route geometry from shapes.txt, empty if the feed has none.
+     */
+    public ShapeTable getShapes() {
+        return shapes;
+    }
+
+    public TripServiceCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * Service day starts in the agency time zone, for converting stop times to epochs.
+     */
+    public ServiceDayClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Trips running on a service date, by stop times trip id.
+     */
+    public ActiveTripIndex getActiveTrips() {
+        return activeTrips;
+    }
+
+    public TripMatcher getMatcher() {
+        return matcher;
+    }
+
+    public StopTripMapper getStopTripMapper() {
+        return stopTripMapper;
+    }
+
+    public RouteService getRouteService() {
+        return routeService;
+    }
+
+    /**
+     * Scheduled departures by stop and time window.
+     */
+    public DepartureIndex getDepartures() {
+        return departures;
+    }
+
+    /**
+     * Routes serving each stop, by direction and headsign.
+     */
+    public StopRouteIndex getStopRoutes() {
+        return stopRoutes;
+    }
+}
@@ -0,0 +1,250 @@
+package damose.service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import damose.config.AppConstants;
+import damose.data.loader.AgencyLoader;
+import damose.data.loader.CalendarLoader;
+import damose.data.loader.GtfsSnapshot;
+import damose.data.loader.GtfsSource;
+import damose.data.loader.RoutesLoader;
+import damose.data.loader.ShapesLoader;
+import damose.data.loader.StopTimesLoader;
+import damose.data.loader.StopsLoader;
+import damose.data.loader.TrackedGtfsSource;
+import damose.data.loader.TripsLoader;
+import damose.data.mapper.ActiveTripIndex;
+import damose.data.mapper.StopRouteIndex;
+import damose.data.mapper.StopTripMapper;
+import damose.data.mapper.TripMatcher;
+import damose.data.model.Route;
+import damose.data.model.ServiceDayClock;
+import damose.data.model.ShapeTable;
+import damose.data.model.Stop;
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+import damose.data.model.TripServiceCalendar;
+
+/**
+ * Loads the static GTFS files concurrently and builds each index
+ * as soon as its inputs are available.
+ * Every finished stage is reported to a {@link ProgressListener} with its duration.
+ * When a snapshot of the same source files exists it is mapped instead of parsing, and
+ * the indexes it holds are reused; the others are rebuilt from the mapped tables.
+ * Otherwise a snapshot is written in the background after a clean load.
+ */
+public final class StaticDataBootstrap {
+
+    /**
+     * Loading stages, in no particular completion order.
+     */
+    public enum Stage {
+        SNAPSHOT("snapshot"),
+        STOPS("stops.txt"),
+        TRIPS("trips.txt"),
+        STOP_TIMES("stop_times.txt"),
+        CALENDAR("calendar.txt"),
+        AGENCY("agency.txt"),
+        ROUTES("routes.txt"),
+        SHAPES("shapes.txt"),
+        TRIP_MATCHER("indice viaggi"),
+        STOP_TRIP_MAPPER("indice fermate"),
+        ROUTE_SERVICE("indice linee"),
+        STOP_ROUTES("linee per fermata");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Receives stage completions; called from loader threads.
+     */
+    public interface ProgressListener {
+        void onStageDone(Stage stage, long elapsedMillis, int completed, int total);
+    }
+
+    // One thread per file loaded in parallel
+    private static final int THREADS = 4;
+
+    private final TrackedGtfsSource source;
+    private final ProgressListener listener;
+    private final AtomicInteger completed = new AtomicInteger();
+    private volatile Long sourceHash;
+
+    public StaticDataBootstrap(ProgressListener listener) {
+        this(GtfsSource.resolveDefault(), listener);
+    }
+
+    public StaticDataBootstrap(GtfsSource source, ProgressListener listener) {
+        this.source = new TrackedGtfsSource(source);
+        this.listener = listener;
+    }
+
+    /**
+     * Start loading in the background. The source is closed once loading completes.
+     * @return future completed with the loaded data, or exceptionally if a stage failed
+     */
+    public CompletableFuture<StaticData> start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "StaticLoader-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long startNanos = System.nanoTime();
+
+        // A snapshot of unchanged sources replaces parsing of every file
+        CompletableFuture<GtfsSnapshot> snapshot = CompletableFuture.supplyAsync(
+                () -> timed(Stage.SNAPSHOT, this::openSnapshot), executor);
+
+        CompletableFuture<List<Stop>> stops = snapshot.thenApplyAsync(
+                snap -> timed(Stage.STOPS, () -> snap != null ? snap.getStops() : StopsLoader.load(source)), executor);
+        CompletableFuture<List<Route>> routes = snapshot.thenApplyAsync(
+                snap -> timed(Stage.ROUTES, () -> snap != null ? snap.getRoutes() : RoutesLoader.load(source)), executor);
+        CompletableFuture<List<Trip>> trips = snapshot.thenApplyAsync(
+                snap -> timed(Stage.TRIPS, () -> snap != null ? snap.getTrips() : TripsLoader.load(source)), executor);
+        CompletableFuture<StopTimeTable> stopTimes = snapshot.thenApplyAsync(
+                snap -> timed(Stage.STOP_TIMES, () -> snap != null ? snap.getStopTimes() : StopTimesLoader.load(source)),
+                executor);
+        CompletableFuture<ShapeTable> shapes = snapshot.thenApplyAsync(
+                snap -> timed(Stage.SHAPES, () -> snap != null ? snap.getShapes() : ShapesLoader.load(source)), executor);
+        CompletableFuture<TripServiceCalendar> calendar = snapshot.thenApplyAsync(
+                snap -> timed(Stage.CALENDAR, () -> snap != null ? snap.getCalendar() : loadCalendar()), executor);
+        CompletableFuture<ZoneId> timeZone = snapshot.thenApplyAsync(
+                snap -> timed(Stage.AGENCY, () -> snap != null ? snap.getTimeZone() : AgencyLoader.loadTimeZone(source)),
+                executor);
+
+        CompletableFuture<TripMatcher> matcher = trips.thenApplyAsync(
+                t -> timed(Stage.TRIP_MATCHER, () -> new TripMatcher(t)), executor);
+        CompletableFuture<StopTripMapper> stopTripMapper = stopTimes.thenCombineAsync(matcher,
+                (st, m) -> timed(Stage.STOP_TRIP_MAPPER, () -> {
+                    GtfsSnapshot snap = snapshot.join();
+                    return snap != null ? snap.getStopTripMapper() : new StopTripMapper(st, m);
+                }), executor);
+        CompletableFuture<RouteService> routeService = CompletableFuture.allOf(stops, routes, trips, stopTimes)
+                .thenApplyAsync(v -> timed(Stage.ROUTE_SERVICE,
+                        () -> new RouteService(routes.join(), trips.join(), stopTimes.join(), stops.join())), executor);
+        CompletableFuture<ActiveTripIndex> activeTrips = calendar.thenCombine(stopTripMapper, ActiveTripIndex::new);
+        CompletableFuture<StopRouteIndex> stopRoutes = stopTripMapper.thenCombineAsync(activeTrips,
+                (m, a) -> timed(Stage.STOP_ROUTES, () -> new StopRouteIndex(stopTimes.join(), m, a)), executor);
+
+        return CompletableFuture.allOf(shapes, timeZone, routeService, stopRoutes)
+                .thenApply(v -> new StaticData(stops.join(), routes.join(), trips.join(), stopTimes.join(), shapes.join(),
+                        calendar.join(), buildClock(timeZone.join(), calendar.join()), activeTrips.join(),
+                        matcher.join(), stopTripMapper.join(), routeService.join(), stopRoutes.join()))
+                .whenComplete((data, error) -> {
+                    GtfsSnapshot snap = snapshot.getNow(null);
+                    if (error == null && snap == null && sourceHash != null && isComplete(data)) {
+                        executor.execute(() -> writeSnapshot(data));
+                    }
+                    executor.shutdown();
+                    closeSource();
+                    long ms = (System.nanoTime() - startNanos) / 1_000_000;
+                    if (error != null) {
+                        System.err.println("Static data loading failed after " + ms + " ms: " + error.getMessage());
+                    } else {
+                        System.out.println("Static data loaded in " + ms + " ms");
+                    }
+                });
+    }
+
+    /**
+     * Day starts for every date of the calendar, plus a day on each side for
+     * trips crossing midnight.
+     */
+    private static ServiceDayClock buildClock(ZoneId zone, TripServiceCalendar calendar) {
+        LocalDate first = calendar.getFirstDate();
+        LocalDate last = calendar.getLastDate();
+        if (first == null) {
+            first = LocalDate.now(zone);
+            last = first;
+        }
+        return new ServiceDayClock(zone, first.minusDays(1), last.plusDays(1));
+    }
+
+    private <T> T timed(Stage stage, Supplier<T> task) {
+        long startNanos = System.nanoTime();
+        T result = task.get();
+        long ms = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("Stage " + stage.getLabel() + ": " + ms + " ms");
+        listener.onStageDone(stage, ms, completed.incrementAndGet(), Stage.values().length);
+        return result;
+    }
+
+    private GtfsSnapshot openSnapshot() {
+        if (!AppConstants.SNAPSHOT_ENABLED) return null;
+        try {
+            sourceHash = GtfsSnapshot.sourceHash(source);
+            return GtfsSnapshot.open(GtfsSnapshot.pathFor(sourceHash), sourceHash);
+        } catch (IOException e) {
+            System.err.println("Could not hash GTFS sources: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Whether parsed data can be snapshotted. Loaders keep going past read errors,
+     * and a partial table saved under the sources' hash would be mapped on every
+     * start until the files change.
+     */
+    private boolean isComplete(StaticData data) {
+        Set<String> failed = source.getFailedTables();
+        if (!failed.isEmpty()) {
+            System.err.println("GTFS snapshot not written, tables not fully read: " + failed);
+            return false;
+        }
+        String rejection = StaticDataManager.rejectReason(data);
+        if (rejection != null) {
+            System.err.println("GTFS snapshot not written (" + rejection + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Save freshly parsed data so the next start can map it instead.
+     */
+    private void writeSnapshot(StaticData data) {
+        try {
+            GtfsSnapshot.write(GtfsSnapshot.pathFor(sourceHash), sourceHash, data.getStops(),
+                    data.getRoutes(), data.getTrips(), data.getCalendar(), data.getClock().getZone(), data.getStopTimes(),
+                    data.getShapes(), data.getStopTripMapper());
+        } catch (IOException e) {
+            System.err.println("Could not write GTFS snapshot: " + e.getMessage());
+        }
+    }
+
+    private void closeSource() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            System.err.println("Could not close GTFS source: " + e.getMessage());
+        }
+    }
+
+    private TripServiceCalendar loadCalendar() {
+        try {
+            return CalendarLoader.load(source);
+        } catch (Exception e) {
+            System.out.println("Could not load calendar: " + e.getMessage());
+            source.reportFailure(AppConstants.GTFS_CALENDAR_FILE, e);
+            return TripServiceCalendar.empty();
+        }
+    }
+}
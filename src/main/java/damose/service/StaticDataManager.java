@@ -0,0 +1,236 @@
+package damose.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import damose.config.AppConstants;
+import damose.data.loader.GtfsSource;
+import damose.data.model.StopTimeTable;
+import damose.data.model.Trip;
+
+/**
+ * Owns the current generation of static data and swaps it when the feed changes.
+ * The feed zip or directory is watched; a change triggers a full rebuild on a
+ * background thread, and the finished {@link StaticData} replaces the old one in a
+ * single atomic step. Callers read {@link #current()} once per operation, so work
+ * already running completes on the generation it started with.
+ */
+public final class StaticDataManager {
+
+    private final AtomicReference<StaticData> current;
+    private final Path feedPath;
+    private final List<Consumer<StaticData>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "StaticDataReload");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public StaticDataManager(StaticData initial, Path feedPath) {
+        this.current = new AtomicReference<>(initial);
+        this.feedPath = feedPath;
+    }
+
+    /**
+     * The generation to use for one operation; never null.
+     */
+    public StaticData current() {
+        return current.get();
+    }
+
+    /**
+     * Called with each newly published generation, on the reload thread.
+     */
+    public void addListener(Consumer<StaticData> listener) {
+        listeners.add(listener);
+    }
+
+    // -------- Reload --------
+
+    /**
+     * Rebuild from the feed in the background. Requests made while a rebuild is
+     * queued are merged into it.
+     * @return future completed with the published generation, or the current one if the reload was rejected
+     */
+    public CompletableFuture<StaticData> reload() {
+        if (!reloadPending.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(current());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            reloadPending.set(false);
+            return rebuild();
+        }, reloadExecutor);
+    }
+
+    private StaticData rebuild() {
+        System.out.println("Reloading static GTFS from " + feedPath);
+        StaticData next;
+        try {
+            next = new StaticDataBootstrap(GtfsSource.open(feedPath), (stage, ms, done, total) -> { })
+                    .start()
+                    .join();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Static GTFS reload failed, keeping current data: " + e.getMessage());
+            return current();
+        }
+
+        // A feed caught mid-copy parses as partial data: keep serving the old one
+        String rejection = rejectReason(next);
+        if (rejection != null) {
+            System.err.println("Static GTFS reload rejected (" + rejection + "), keeping current data");
+            return current();
+        }
+
+        StaticData previous = current.getAndSet(next);
+        System.out.println("Static GTFS generation " + previous.getGeneration()
+                + " -> " + next.getGeneration());
+        for (Consumer<StaticData> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                System.err.println("Static data listener failed: " + e.getMessage());
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Why a rebuilt generation is not fit to replace the current one, or null if it is.
+     * Loaders log unreadable files and rows and go on, so a feed caught mid-copy loads
+     * with tables missing or cut short: empty tables, a calendar with no service
+     * around today, or trips and stop times that no longer match reveal it.
+     */
+    static String rejectReason(StaticData data) {
+        if (data.getStops().isEmpty()) return "no stops";
+        if (data.getRoutes().isEmpty()) return "no routes";
+        if (data.getTrips().isEmpty()) return "no trips";
+        StopTimeTable stopTimes = data.getStopTimes();
+        if (stopTimes.size() == 0) return "no stop times";
+
+        LocalDate today = data.getClock().dateOf(Instant.now().getEpochSecond());
+        if (data.getCalendar().activeServices(today).isEmpty()
+                && data.getCalendar().activeServices(today.plusDays(1)).isEmpty()) {
+            return "no service today or tomorrow";
+        }
+
+        // A truncated trips.txt leaves stop times without a trip, a truncated
+        // stop_times.txt leaves trips without stop times
+        int unknownTrips = 0;
+        for (int t = 0; t < stopTimes.tripCount(); t++) {
+            if (data.getStopTripMapper().getTrip(t) == null) unknownTrips++;
+        }
+        int tripsWithoutStops = 0;
+        for (Trip trip : data.getTrips()) {
+            if (stopTimes.indexOfTrip(trip.getTripId()) == StopTimeTable.NONE) tripsWithoutStops++;
+        }
+        double maxUnmatched = AppConstants.FEED_RELOAD_MAX_UNMATCHED_TRIPS;
+        if (unknownTrips > stopTimes.tripCount() * maxUnmatched) {
+            return unknownTrips + " stop times trips missing from trips.txt";
+        }
+        if (tripsWithoutStops > data.getTrips().size() * maxUnmatched) {
+            return tripsWithoutStops + " trips without stop times";
+        }
+        return null;
+    }
+
+    // -------- Watch --------
+
+    /**
+     * Watch the feed for changes. A zip is watched through its directory, so a
+     * feed dropped in place later is picked up too.
+     */
+    public synchronized void startWatching() {
+        if (watchThread != null) return;
+
+        Path dir = Files.isDirectory(feedPath) ? feedPath : feedPath.getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            System.err.println("Cannot watch static GTFS feed: " + feedPath);
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("Cannot watch static GTFS feed: " + e.getMessage());
+            return;
+        }
+
+        watchThread = new Thread(() -> watchLoop(dir.equals(feedPath)), "StaticDataWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        System.out.println("Watching static GTFS feed: " + feedPath);
+    }
+
+    public synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {}
+        }
+        watchService = null;
+        watchThread = null;
+    }
+
+    private void watchLoop(boolean watchingFeedDir) {
+        WatchService ws = watchService;
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean changed = isFeedEvent(key, watchingFeedDir);
+
+                // Wait for the writer to finish before reloading
+                while (changed) {
+                    WatchKey next = ws.poll(AppConstants.FEED_RELOAD_QUIET_MS, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    isFeedEvent(next, watchingFeedDir);
+                }
+
+                if (changed && Files.exists(feedPath)) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Watching stopped
+        }
+    }
+
+    private boolean isFeedEvent(WatchKey key, boolean watchingFeedDir) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (watchingFeedDir || feedPath.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+}
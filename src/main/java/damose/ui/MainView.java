@@ -28,7 +28,12 @@ import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.viewer.GeoPosition;
 
 import damose.config.AppConstants;
+import damose.data.mapper.StopSpatialIndex;
+import damose.data.model.ArrivalPrediction;
+import damose.data.model.Line;
+import damose.data.model.Route;
 import damose.data.model.Stop;
+import damose.data.model.StopRoute;
 import damose.ui.component.ConnectionButton;
 import damose.ui.component.FloatingArrivalPanel;
 import damose.ui.component.SearchOverlay;
@@ -48,13 +53,13 @@ public class MainView {
     private JButton maxButton;
     private JButton minButton;
     private JButton busToggleButton;
+    private JButton stopToggleButton;
     private ConnectionButton connectionButton;
     private SearchOverlay searchOverlay;
     private JPanel overlayPanel;
     private FloatingArrivalPanel floatingPanel;
     private GeoPosition floatingAnchorGeo;
-    private List<Stop> allStopsCache = new ArrayList<>();
-    private List<Stop> allLinesCache = new ArrayList<>();
+    private StopSpatialIndex stopIndex;
 
     private Point dragOffset;
     private boolean isDragging = false;
@@ -71,19 +76,36 @@ public class MainView {
         if (searchOverlay != null) searchOverlay.showSearch();
     }
 
-    public void setSearchData(List<Stop> stops, List<Stop> lines) {
-        this.allLinesCache = lines != null ? lines : new ArrayList<>();
+    public void setSearchData(List<Stop> stops, List<Line> lines) {
         if (searchOverlay != null) {
             searchOverlay.setData(stops, lines);
         }
     }
 
+    public void setLineSearch(java.util.function.Function<String, List<Line>> lineSearch) {
+        if (searchOverlay != null) {
+            searchOverlay.setLineSearch(lineSearch);
+        }
+    }
+
+    public void setStopRoutes(java.util.function.Function<String, List<Route>> stopRoutes) {
+        if (searchOverlay != null) {
+            searchOverlay.setStopRoutes(stopRoutes);
+        }
+    }
+
     public void setOnSearchSelect(java.util.function.Consumer<Stop> callback) {
         if (searchOverlay != null) {
             searchOverlay.setOnSelect(callback);
         }
     }
 
+    public void setOnLineSearchSelect(java.util.function.Consumer<Line> callback) {
+        if (searchOverlay != null) {
+            searchOverlay.setOnLineSelect(callback);
+        }
+    }
+
     public JButton getSearchButton() {
         return searchButton;
     }
@@ -95,6 +117,10 @@ public class MainView {
     public JButton getBusToggleButton() {
         return busToggleButton;
     }
+
+    public JButton getStopToggleButton() {
+        return stopToggleButton;
+    }
     
     public ConnectionButton getConnectionButton() {
         return connectionButton;
@@ -197,6 +223,17 @@ public class MainView {
         busToggleButton.setToolTipText("Mostra/Nascondi autobus");
         busToggleButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         overlayPanel.add(busToggleButton);
+
+        // Stop network toggle button (below bus toggle)
+        ImageIcon stopIcon = new ImageIcon(getClass().getResource("/sprites/stop.png"));
+        Image scaledStop = stopIcon.getImage().getScaledInstance(40, 40, Image.SCALE_SMOOTH);
+        stopToggleButton = new JButton(new ImageIcon(scaledStop));
+        stopToggleButton.setContentAreaFilled(false);
+        stopToggleButton.setBorderPainted(false);
+        stopToggleButton.setBounds(15, 180, 48, 48);
+        stopToggleButton.setToolTipText("Nascondi fermate");
+        stopToggleButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        overlayPanel.add(stopToggleButton);
         
         // Window control buttons (top-right corner) - add first so connection button is below
         createWindowControls();
@@ -335,40 +372,23 @@ public class MainView {
         mapViewer.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (allStopsCache.isEmpty()) return;
+                if (stopIndex == null) return;
 
                 int x = e.getX();
                 int y = e.getY();
 
                 GeoPosition clickedPos = mapViewer.convertPointToGeoPosition(e.getPoint());
-                Stop nearest = findNearestStop(clickedPos);
+                List<Stop> nearest = stopIndex.nearest(clickedPos.getLatitude(), clickedPos.getLongitude(), 1);
 
-                if (nearest != null && GeoUtils.isClickCloseToStop(mapViewer, nearest, x, y)) {
+                if (!nearest.isEmpty() && GeoUtils.isClickCloseToStop(mapViewer, nearest.get(0), x, y)) {
                     if (stopClickListener != null) {
-                        stopClickListener.onStopClicked(nearest);
+                        stopClickListener.onStopClicked(nearest.get(0));
                     }
                 }
             }
         });
     }
 
-    private Stop findNearestStop(GeoPosition pos) {
-        double minDist = Double.MAX_VALUE;
-        Stop nearest = null;
-
-        for (Stop s : allStopsCache) {
-            double d = GeoUtils.haversine(
-                    pos.getLatitude(), pos.getLongitude(),
-                    s.getStopLat(), s.getStopLon()
-            );
-            if (d < minDist) {
-                minDist = d;
-                nearest = s;
-            }
-        }
-        return nearest;
-    }
-
     public interface StopClickListener {
         void onStopClicked(Stop stop);
     }
@@ -379,11 +399,11 @@ public class MainView {
         this.stopClickListener = listener;
     }
 
-    public void setAllStops(List<Stop> stops) {
-        this.allStopsCache = stops;
+    public void setStopIndex(StopSpatialIndex stopIndex) {
+        this.stopIndex = stopIndex;
     }
 
-    public void showFloatingPanel(String stopName, String stopId, List<String> arrivi, 
+    public void showFloatingPanel(String stopName, String stopId, List<ArrivalPrediction> arrivi, 
                                    boolean isFavorite, Point2D pos, GeoPosition anchorGeo) {
         floatingPanel.update(stopName, stopId, arrivi, isFavorite);
         this.floatingAnchorGeo = anchorGeo;
@@ -413,7 +433,7 @@ public class MainView {
         floatingPanel.fadeIn(300, 15);
     }
 
-    public void showFloatingPanel(String stopName, List<String> arrivi, Point2D pos) {
+    public void showFloatingPanel(String stopName, List<ArrivalPrediction> arrivi, Point2D pos) {
         showFloatingPanel(stopName, null, arrivi, false, pos, null);
     }
     
@@ -425,7 +445,7 @@ public class MainView {
         return floatingPanel.isVisible();
     }
     
-    public void refreshFloatingPanel(String stopName, String stopId, List<String> arrivi, boolean isFavorite) {
+    public void refreshFloatingPanel(String stopName, String stopId, List<ArrivalPrediction> arrivi, boolean isFavorite) {
         floatingPanel.update(stopName, stopId, arrivi, isFavorite);
         floatingPanel.repaint();
     }
@@ -441,13 +461,17 @@ public class MainView {
     public void setOnViewAllTrips(Runnable callback) {
         floatingPanel.setOnViewAllTrips(callback);
     }
+
+    public void setFloatingPanelStopRoutes(java.util.function.Function<String, List<StopRoute>> stopRoutes) {
+        floatingPanel.setStopRoutes(stopRoutes);
+    }
     
-    public void showAllTripsInPanel(List<String> allTrips) {
+    public void showAllTripsInPanel(List<ArrivalPrediction> allTrips) {
         floatingPanel.showAllTripsView(allTrips);
     }
     
-    public void showFavoritesInSearch(List<Stop> favorites) {
-        searchOverlay.showFavorites(favorites);
+    public void showFavoritesInSearch(List<Stop> stops, List<Line> lines) {
+        searchOverlay.showFavorites(stops, lines);
     }
 
     public void hideFloatingPanel() {
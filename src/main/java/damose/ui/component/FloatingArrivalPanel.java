@@ -14,8 +14,12 @@ import java.awt.Image;
 import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -30,6 +34,9 @@ import javax.swing.ScrollPaneConstants;
 import javax.swing.Timer;
 
 import damose.config.AppConstants;
+import damose.data.model.ArrivalPrediction;
+import damose.data.model.StopRoute;
+import damose.ui.render.ArrivalRenderer;
 
 /**
  * Floating panel showing arrivals at a stop.
@@ -38,6 +45,7 @@ import damose.config.AppConstants;
 public class FloatingArrivalPanel extends JPanel {
 
     private JLabel title;
+    private JLabel linesLabel;
     private JPanel arrivalsList;
     private JButton closeButton;
     private JButton favoriteButton;
@@ -54,11 +62,12 @@ public class FloatingArrivalPanel extends JPanel {
     private String currentStopId;
     private String currentStopName;
     private boolean isFavorite;
+    private Function<String, List<StopRoute>> stopRoutes;
     
     // View mode: false = normal arrivals, true = all trips of day
     private boolean viewAllMode = false;
-    private List<String> normalArrivals = new ArrayList<>();
-    private List<String> allTripsData = new ArrayList<>();
+    private List<ArrivalPrediction> normalArrivals = new ArrayList<>();
+    private List<ArrivalPrediction> allTripsData = new ArrayList<>();
 
     private float alpha = 1.0f;
     private Timer fadeTimer;
@@ -69,6 +78,8 @@ public class FloatingArrivalPanel extends JPanel {
     private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 16);
     private static final Font ARRIVAL_FONT = new Font("SansSerif", Font.PLAIN, 14);
     private static final Font SMALL_FONT = new Font("SansSerif", Font.PLAIN, 12);
+    private static final int MAX_LINES_SHOWN = 6;
+    private static final int LINES_LABEL_HEIGHT = 18;
 
     public FloatingArrivalPanel() {
         setLayout(null);
@@ -132,8 +143,16 @@ public class FloatingArrivalPanel extends JPanel {
         buttonsPanel.add(Box.createHorizontalStrut(4));
         buttonsPanel.add(closeButton);
 
+        // Lines serving the stop today, most trips first
+        linesLabel = new JLabel();
+        linesLabel.setForeground(AppConstants.TEXT_SECONDARY);
+        linesLabel.setFont(SMALL_FONT);
+        linesLabel.setBorder(BorderFactory.createEmptyBorder(4, 0, 0, 0));
+        linesLabel.setVisible(false);
+
         header.add(title, BorderLayout.CENTER);
         header.add(buttonsPanel, BorderLayout.EAST);
+        header.add(linesLabel, BorderLayout.SOUTH);
 
         arrivalsList = new JPanel();
         arrivalsList.setLayout(new BoxLayout(arrivalsList, BoxLayout.Y_AXIS));
@@ -198,6 +217,13 @@ public class FloatingArrivalPanel extends JPanel {
         this.onViewAllTrips = r;
     }
 
+    /**
+     * Lines serving a stop today, with their trips; shown under the title.
+     */
+    public void setStopRoutes(Function<String, List<StopRoute>> stopRoutes) {
+        this.stopRoutes = stopRoutes;
+    }
+
     public void setPreferredRowsMax(int max) {
         this.maxRows = Math.max(1, max);
     }
@@ -226,7 +252,7 @@ public class FloatingArrivalPanel extends JPanel {
     /**
      * Show all trips data for the day.
      */
-    public void showAllTripsView(List<String> allTrips) {
+    public void showAllTripsView(List<ArrivalPrediction> allTrips) {
         this.allTripsData = new ArrayList<>(allTrips);
         this.viewAllMode = true;
         
@@ -244,19 +270,12 @@ public class FloatingArrivalPanel extends JPanel {
             noData.setBorder(BorderFactory.createEmptyBorder(8, 4, 8, 4));
             arrivalsList.add(noData);
         } else {
-            for (String trip : allTrips) {
-                JLabel label = new JLabel(trip);
-                label.setForeground(Color.WHITE);
+            for (ArrivalPrediction trip : allTrips) {
+                JLabel label = new JLabel(ArrivalRenderer.tripText(trip));
+                // Color based on RT status
+                label.setForeground(ArrivalRenderer.tripColor(trip));
                 label.setFont(SMALL_FONT);
                 label.setBorder(BorderFactory.createEmptyBorder(6, 8, 6, 8));
-                
-                // Color based on RT status
-                if (trip.contains("[+") || trip.contains("ritardo")) {
-                    label.setForeground(AppConstants.ERROR_COLOR);
-                } else if (trip.contains("[-") || trip.contains("[OK]")) {
-                    label.setForeground(AppConstants.SUCCESS_COLOR);
-                }
-                
                 arrivalsList.add(label);
             }
         }
@@ -285,26 +304,28 @@ public class FloatingArrivalPanel extends JPanel {
         displayArrivals(normalArrivals);
         
         arrivalsList.revalidate();
-        updatePanelSize(Math.min(normalArrivals.size(), maxRows));
+        updatePanelSize(Math.min(Math.max(normalArrivals.size(), 1), maxRows));
     }
     
-    private void displayArrivals(List<String> arrivals) {
-        for (String a : arrivals) {
-            Color dotColor = Color.WHITE;
-            String lower = a.toLowerCase();
-            if (lower.contains("ritardo")) {
-                dotColor = AppConstants.ERROR_COLOR;
-            } else if (lower.contains("anticipo") || lower.contains("in orario")) {
-                dotColor = AppConstants.SUCCESS_COLOR;
-            } else if (lower.contains("statico")) {
-                dotColor = AppConstants.TEXT_SECONDARY;
-            }
+    private void displayArrivals(List<ArrivalPrediction> arrivals) {
+        if (arrivals.isEmpty()) {
+            JLabel noData = new JLabel("Nessun arrivo imminente");
+            noData.setForeground(Color.WHITE);
+            noData.setFont(ARRIVAL_FONT);
+            noData.setBorder(BorderFactory.createEmptyBorder(8, 4, 8, 4));
+            noData.setIcon(new DotIcon(10, Color.WHITE));
+            noData.setIconTextGap(12);
+            arrivalsList.add(noData);
+            return;
+        }
 
-            JLabel label = new JLabel(a);
+        long nowEpoch = Instant.now().getEpochSecond();
+        for (ArrivalPrediction a : arrivals) {
+            JLabel label = new JLabel(ArrivalRenderer.nextArrivalText(a, nowEpoch));
             label.setForeground(Color.WHITE);
             label.setFont(ARRIVAL_FONT);
             label.setBorder(BorderFactory.createEmptyBorder(8, 4, 8, 4));
-            label.setIcon(new DotIcon(10, dotColor));
+            label.setIcon(new DotIcon(10, ArrivalRenderer.nextArrivalColor(a)));
             label.setIconTextGap(12);
             arrivalsList.add(label);
         }
@@ -313,7 +334,7 @@ public class FloatingArrivalPanel extends JPanel {
     private void updatePanelSize(int rows) {
         // For normal arrivals: header (50) + rows*36 + footer (40) + padding (10)
         int rowHeight = 36;
-        int headerHeight = 50;
+        int headerHeight = headerHeight();
         int footerHeight = 40;
         int padding = 10;
         
@@ -326,7 +347,7 @@ public class FloatingArrivalPanel extends JPanel {
     private void updatePanelSizeForTrips(int rows) {
         // For all trips view: smaller row height, more rows visible
         int rowHeight = 28;
-        int headerHeight = 50;
+        int headerHeight = headerHeight();
         int footerHeight = 40;
         int padding = 10;
         
@@ -340,6 +361,33 @@ public class FloatingArrivalPanel extends JPanel {
         applyPanelSize(contentHeight, scrollHeight);
     }
     
+    private int headerHeight() {
+        return 50 + (linesLabel.isVisible() ? LINES_LABEL_HEIGHT : 0);
+    }
+
+    /**
+     * "Linee oggi: 64 (42), 70 (30) +3", trips of each route summed over its directions.
+     */
+    private String linesText(String stopId) {
+        List<StopRoute> routes = stopRoutes != null && stopId != null ? stopRoutes.apply(stopId) : List.of();
+        Map<String, Integer> tripsByRoute = new LinkedHashMap<>();
+        for (StopRoute r : routes) {
+            tripsByRoute.merge(r.getRouteId(), r.getTripCount(), Integer::sum);
+        }
+        if (tripsByRoute.isEmpty()) return null;
+
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(tripsByRoute.entrySet());
+        sorted.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        StringBuilder sb = new StringBuilder("Linee oggi: ");
+        int shown = Math.min(sorted.size(), MAX_LINES_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(sorted.get(i).getKey()).append(" (").append(sorted.get(i).getValue()).append(")");
+        }
+        if (sorted.size() > shown) sb.append(" +").append(sorted.size() - shown);
+        return sb.toString();
+    }
+
     private void applyPanelSize(int contentHeight, int scrollHeight) {
         // Update content bounds
         content.setBounds(0, 0, AppConstants.FLOATING_PANEL_WIDTH, contentHeight);
@@ -477,7 +525,7 @@ public class FloatingArrivalPanel extends JPanel {
         }
     }
 
-    public void update(String stopName, String stopId, List<String> arrivi, boolean isFavorite) {
+    public void update(String stopName, String stopId, List<ArrivalPrediction> arrivi, boolean isFavorite) {
         this.currentStopId = stopId;
         this.currentStopName = stopName;
         this.normalArrivals = new ArrayList<>(arrivi);
@@ -488,6 +536,10 @@ public class FloatingArrivalPanel extends JPanel {
         String displayName = safeName.length() > 25 ? safeName.substring(0, 25) + "..." : safeName;
         title.setText("Arrivi a " + displayName);
 
+        String lines = linesText(stopId);
+        linesLabel.setText(lines);
+        linesLabel.setVisible(lines != null);
+
         // Reset to normal view
         viewAllButton.setVisible(true);
         backButton.setVisible(false);
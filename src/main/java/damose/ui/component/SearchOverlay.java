@@ -15,6 +15,7 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -33,28 +34,37 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import damose.config.AppConstants;
+import damose.data.model.Line;
+import damose.data.model.Route;
 import damose.data.model.Stop;
 import damose.service.FavoritesService;
 
 /**
  * Spotlight-style search overlay.
+ * Results are {@link Stop}s or {@link Line}s; favorites list stops first, then lines.
  */
 public class SearchOverlay extends JPanel {
 
     private final JTextField searchField;
-    private final DefaultListModel<Stop> listModel;
-    private final JList<Stop> resultList;
+    private final DefaultListModel<Object> listModel;
+    private final JList<Object> resultList;
     private final JPanel contentPanel;
     private final JLabel stopsModeBtn;
     private final JLabel linesModeBtn;
     private final JLabel favoritesModeBtn;
 
+    private static final int MAX_ROUTES_SHOWN = 6;
+
     private enum SearchMode { STOPS, LINES, FAVORITES }
     private SearchMode currentMode = SearchMode.STOPS;
     private List<Stop> allStops = new ArrayList<>();
-    private List<Stop> allLines = new ArrayList<>();
+    private List<Line> allLines = new ArrayList<>();
     private List<Stop> favoriteStops = new ArrayList<>();
+    private List<Line> favoriteLines = new ArrayList<>();
+    private Function<String, List<Line>> lineSearch;
+    private Function<String, List<Route>> stopRoutes;
     private Consumer<Stop> onSelect;
+    private Consumer<Line> onLineSelect;
 
     public SearchOverlay() {
         setLayout(null);
@@ -169,7 +179,7 @@ public class SearchOverlay extends JPanel {
         resultList.setSelectionForeground(Color.WHITE);
         resultList.setFont(AppConstants.FONT_BODY);
         resultList.setFixedCellHeight(58); // Increased for better spacing
-        resultList.setCellRenderer(new StopCellRenderer());
+        resultList.setCellRenderer(new ResultCellRenderer());
 
         resultList.addKeyListener(new KeyAdapter() {
             @Override
@@ -260,21 +270,29 @@ public class SearchOverlay extends JPanel {
         String query = searchField.getText().toLowerCase().trim();
         listModel.clear();
 
-        List<Stop> source = switch (currentMode) {
+        List<?> source = switch (currentMode) {
             case STOPS -> allStops;
             case LINES -> allLines;
-            case FAVORITES -> favoriteStops;
+            case FAVORITES -> {
+                List<Object> favorites = new ArrayList<>(favoriteStops);
+                favorites.addAll(favoriteLines);
+                yield favorites;
+            }
         };
         
         int count = 0;
         int limit = (currentMode == SearchMode.FAVORITES) ? 100 : 50;
 
-        for (Stop s : source) {
+        // Lines come ranked from the line index when one is set
+        if (currentMode == SearchMode.LINES && lineSearch != null && !query.isEmpty()) {
+            source = lineSearch.apply(query);
+            query = "";
+        }
+
+        for (Object item : source) {
             if (count >= limit) break;
-            String name = s.getStopName().toLowerCase();
-            String id = s.getStopId().toLowerCase();
-            if (query.isEmpty() || name.contains(query) || id.contains(query)) {
-                listModel.addElement(s);
+            if (query.isEmpty() || matches(item, query)) {
+                listModel.addElement(item);
                 count++;
             }
         }
@@ -284,6 +302,17 @@ public class SearchOverlay extends JPanel {
         }
     }
 
+    private static boolean matches(Object item, String query) {
+        if (item instanceof Line) {
+            Line line = (Line) item;
+            return line.getName().toLowerCase().contains(query)
+                    || line.getRouteId().toLowerCase().contains(query);
+        }
+        Stop stop = (Stop) item;
+        return stop.getStopName().toLowerCase().contains(query)
+                || stop.getStopId().toLowerCase().contains(query);
+    }
+
     private void moveSelection(int delta) {
         int idx = resultList.getSelectedIndex();
         int newIdx = idx + delta;
@@ -294,30 +323,39 @@ public class SearchOverlay extends JPanel {
     }
 
     private void selectCurrentAndClose() {
-        Stop selected = resultList.getSelectedValue();
-        if (selected != null) {
+        Object selected = resultList.getSelectedValue();
+        if (selected instanceof Line) {
+            Line line = (Line) selected;
+            Consumer<Line> callback = onLineSelect;
+            closeOverlay();
+            if (callback != null) {
+                SwingUtilities.invokeLater(() -> callback.accept(line));
+            }
+        } else if (selected instanceof Stop) {
+            Stop stop = (Stop) selected;
             Consumer<Stop> callback = onSelect;
             closeOverlay();
             if (callback != null) {
-                SwingUtilities.invokeLater(() -> callback.accept(selected));
+                SwingUtilities.invokeLater(() -> callback.accept(stop));
             }
         }
     }
     
     private void toggleSelectedFavorite() {
-        Stop selected = resultList.getSelectedValue();
+        Object selected = resultList.getSelectedValue();
         if (selected != null) {
-            if (selected.isFakeLine()) {
-                FavoritesService.toggleLineFavorite(selected.getStopId());
+            if (selected instanceof Line) {
+                FavoritesService.toggleLineFavorite(((Line) selected).getId());
             } else {
-                FavoritesService.toggleFavorite(selected.getStopId());
+                FavoritesService.toggleFavorite(((Stop) selected).getStopId());
             }
             // Refresh the list to show updated star
             resultList.repaint();
             
             // If in favorites mode, refresh the list
             if (currentMode == SearchMode.FAVORITES) {
-                favoriteStops = FavoritesService.getAllFavorites();
+                favoriteStops = FavoritesService.getFavoriteStops();
+                favoriteLines = FavoritesService.getFavoriteLines();
                 filterResults();
             }
         }
@@ -327,15 +365,33 @@ public class SearchOverlay extends JPanel {
         setVisible(false);
     }
 
-    public void setData(List<Stop> stops, List<Stop> lines) {
+    public void setData(List<Stop> stops, List<Line> lines) {
         this.allStops = stops != null ? new ArrayList<>(stops) : new ArrayList<>();
         this.allLines = lines != null ? new ArrayList<>(lines) : new ArrayList<>();
     }
 
+    /**
+     * Ranked line search used by the lines tab instead of filtering the lines list.
+     */
+    public void setLineSearch(Function<String, List<Line>> lineSearch) {
+        this.lineSearch = lineSearch;
+    }
+
+    /**
+     * Routes serving a stop, most served first, shown under stop results and favorites.
+     */
+    public void setStopRoutes(Function<String, List<Route>> stopRoutes) {
+        this.stopRoutes = stopRoutes;
+    }
+
     public void setOnSelect(Consumer<Stop> callback) {
         this.onSelect = callback;
     }
 
+    public void setOnLineSelect(Consumer<Line> callback) {
+        this.onLineSelect = callback;
+    }
+
     public void showSearch() {
         searchField.setText("");
         currentMode = SearchMode.STOPS;
@@ -355,9 +411,10 @@ public class SearchOverlay extends JPanel {
     /**
      * Show favorites tab in the search overlay.
      */
-    public void showFavorites(List<Stop> favorites) {
+    public void showFavorites(List<Stop> stops, List<Line> lines) {
         searchField.setText("");
-        this.favoriteStops = favorites != null ? new ArrayList<>(favorites) : new ArrayList<>();
+        this.favoriteStops = stops != null ? new ArrayList<>(stops) : new ArrayList<>();
+        this.favoriteLines = lines != null ? new ArrayList<>(lines) : new ArrayList<>();
         currentMode = SearchMode.FAVORITES;
         updateModeButtons();
         filterResults();
@@ -376,8 +433,9 @@ public class SearchOverlay extends JPanel {
     /**
      * Update the favorites list (called when favorites change).
      */
-    public void updateFavorites(List<Stop> favorites) {
-        this.favoriteStops = new ArrayList<>(favorites);
+    public void updateFavorites(List<Stop> stops, List<Line> lines) {
+        this.favoriteStops = new ArrayList<>(stops);
+        this.favoriteLines = new ArrayList<>(lines);
         if (currentMode == SearchMode.FAVORITES) {
             filterResults();
         }
@@ -408,13 +466,13 @@ public class SearchOverlay extends JPanel {
         return false;
     }
 
-    private class StopCellRenderer extends JPanel implements ListCellRenderer<Stop> {
+    private class ResultCellRenderer extends JPanel implements ListCellRenderer<Object> {
         private final JLabel nameLabel;
         private final JLabel idLabel;
         private final JLabel starLabel;
         private ImageIcon yellowStarIcon;
 
-        public StopCellRenderer() {
+        public ResultCellRenderer() {
             setLayout(new BorderLayout());
             setBorder(new EmptyBorder(10, 14, 10, 14));
             setOpaque(true);
@@ -445,6 +503,19 @@ public class SearchOverlay extends JPanel {
             add(starLabel, BorderLayout.EAST);
         }
         
+        private String routesText(String stopId) {
+            List<Route> routes = stopRoutes != null ? stopRoutes.apply(stopId) : List.of();
+            if (routes.isEmpty()) return "";
+            StringBuilder sb = new StringBuilder("  |  Linee: ");
+            int shown = Math.min(routes.size(), MAX_ROUTES_SHOWN);
+            for (int i = 0; i < shown; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(routes.get(i).getDisplayName());
+            }
+            if (routes.size() > shown) sb.append(" +").append(routes.size() - shown);
+            return sb.toString();
+        }
+
         private Image createYellowStar(int size) {
             java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(
                 size, size, java.awt.image.BufferedImage.TYPE_INT_ARGB);
@@ -476,22 +547,27 @@ public class SearchOverlay extends JPanel {
         }
 
         @Override
-        public java.awt.Component getListCellRendererComponent(JList<? extends Stop> list,
-                Stop value, int index, boolean isSelected, boolean cellHasFocus) {
+        public java.awt.Component getListCellRendererComponent(JList<? extends Object> list,
+                Object value, int index, boolean isSelected, boolean cellHasFocus) {
 
-            String name = value.getStopName();
-            if (name.length() > 38) name = name.substring(0, 38) + "...";
-            nameLabel.setText(name);
-            
             // Check favorite status
+            String name;
             boolean isFavorite;
-            if (value.isFakeLine()) {
-                idLabel.setText("Linea bus");
-                isFavorite = FavoritesService.isLineFavorite(value.getStopId());
+            if (value instanceof Line) {
+                Line line = (Line) value;
+                String longName = line.getRoute().getLongName();
+                name = line.getName();
+                idLabel.setText((longName != null && !longName.isEmpty() ? "Linea bus (" + longName + ")" : "Linea bus")
+                        + "  |  Corse: " + line.getTripCount());
+                isFavorite = FavoritesService.isLineFavorite(line.getId());
             } else {
-                idLabel.setText("Stop ID: " + value.getStopId());
-                isFavorite = FavoritesService.isFavorite(value.getStopId());
+                Stop stop = (Stop) value;
+                name = stop.getStopName();
+                idLabel.setText("Stop ID: " + stop.getStopId() + routesText(stop.getStopId()));
+                isFavorite = FavoritesService.isFavorite(stop.getStopId());
             }
+            if (name.length() > 38) name = name.substring(0, 38) + "...";
+            nameLabel.setText(name);
             
             // Show yellow star if favorite
             starLabel.setIcon(isFavorite ? yellowStarIcon : null);
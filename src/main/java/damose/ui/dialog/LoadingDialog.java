@@ -39,6 +39,8 @@ public class LoadingDialog extends JFrame {
     private Timer countdownTimer;
     private int secondsRemaining;
     private boolean dataReceived = false;
+    // Static stages shown so far, only touched on the EDT
+    private int staticCompleted = 0;
     private Runnable onComplete;
 
     public LoadingDialog(JFrame parent) {
@@ -283,13 +285,23 @@ public class LoadingDialog extends JFrame {
         setProgress(20, "Caricamento dati GTFS...");
     }
 
-    public void stepStaticProgress(String item) {
-        setDetail("Lettura " + item);
+    /**
+     * Report a finished loading stage; progress advances from 20% to 50% as stages complete.
+     * Stages report from loader threads in any order, so a stale count is dropped.
+     */
+    public void stepStaticProgress(String item, long elapsedMillis, int completed, int total) {
+        SwingUtilities.invokeLater(() -> {
+            if (completed <= staticCompleted) return;
+            staticCompleted = completed;
+            progressPanel.setProgress(20 + 30 * completed / Math.max(1, total));
+            statusLabel.setText("Caricamento dati GTFS...");
+            detailLabel.setText(String.format("%s pronto in %,d ms  (%d/%d)", item, elapsedMillis, completed, total));
+        });
     }
 
-    public void stepStaticDone(int stopsCount, int tripsCount) {
+    public void stepStaticDone(int stopsCount, int tripsCount, long elapsedMillis) {
         steps[1].setState(StepIndicator.State.DONE);
-        setProgress(50, "Dati GTFS caricati");
+        setProgress(50, String.format("Dati GTFS caricati in %,d ms", elapsedMillis));
         setDetail(String.format("%,d fermate  |  %,d viaggi", stopsCount, tripsCount));
     }
 
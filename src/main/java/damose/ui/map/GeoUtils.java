@@ -38,10 +38,8 @@ public final class GeoUtils {
      * Check if a click is close to a stop on the map.
      */
     public static boolean isClickCloseToStop(JXMapViewer mapViewer, Stop stop, int clickX, int clickY) {
-        var point = mapViewer.getTileFactory().geoToPixel(
-                new GeoPosition(stop.getStopLat(), stop.getStopLon()),
-                mapViewer.getZoom()
-        );
+        var point = mapViewer.convertGeoPositionToPoint(
+                new GeoPosition(stop.getStopLat(), stop.getStopLon()));
 
         double dx = clickX - point.getX();
         double dy = clickY - point.getY();
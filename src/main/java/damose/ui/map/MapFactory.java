@@ -19,13 +19,23 @@ import damose.config.AppConstants;
  */
 public final class MapFactory {
 
+    private static final TileFactoryInfo TILE_INFO =
+            new OSMTileFactoryInfo("OpenStreetMap", "https://tile.openstreetmap.org");
+
     private MapFactory() {
         // Utility class
     }
 
+    /**
+     * Tile layout of every map viewer, for projecting positions to world pixels
+     * without a viewer (e.g. off the EDT).
+     */
+    public static TileFactoryInfo getTileFactoryInfo() {
+        return TILE_INFO;
+    }
+
     public static JXMapViewer createMapViewer() {
-        TileFactoryInfo info = new OSMTileFactoryInfo("OpenStreetMap", "https://tile.openstreetmap.org");
-        DefaultTileFactory tileFactory = new DefaultTileFactory(info);
+        DefaultTileFactory tileFactory = new DefaultTileFactory(TILE_INFO);
         
         // Use more threads for faster tile loading during animations
         tileFactory.setThreadPoolSize(8);
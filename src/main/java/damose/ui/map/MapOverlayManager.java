@@ -1,22 +1,37 @@
 package damose.ui.map;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.ImageIcon;
 import javax.swing.SwingUtilities;
 
 import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.viewer.GeoPosition;
-
+import org.jxmapviewer.viewer.TileFactoryInfo;
+import org.jxmapviewer.viewer.util.GeoUtil;
+
+import damose.config.AppConstants;
+import damose.data.mapper.StopClusters;
+import damose.data.mapper.StopSpatialIndex;
+import damose.data.model.Route;
+import damose.data.model.ShapeTable;
 import damose.data.model.Stop;
 import damose.data.model.Trip;
 import damose.data.model.VehiclePosition;
@@ -44,6 +59,19 @@ public class MapOverlayManager {
     // Global bus visibility (true = show, false = hide unless route filter is set)
     private static boolean busesVisible = true;
 
+    // Network layer: every stop, queried by viewport; clustered when zoomed out
+    private static StopSpatialIndex stopIndex = null;
+    private static StopClusters stopClusters = null;
+    private static boolean allStopsVisible = true;
+    private static final Font CLUSTER_FONT = new Font("SansSerif", Font.BOLD, 11);
+    private static final Map<Integer, Image> clusterBadges = new HashMap<>();
+    // Clusters project every stop at every level: built here, never on the EDT
+    private static final ExecutorService clusterExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "StopClusters");
+        t.setDaemon(true);
+        return t;
+    });
+
     private static final Object lock = new Object();
     private static boolean initialized = false;
     private static JXMapViewer currentMap = null;
@@ -91,6 +119,11 @@ public class MapOverlayManager {
                     routePainter.paint(g2, map, w, h);
                 }
                 
+                // Draw the stop network, unless a route is shown
+                if (allStopsVisible && routeStops.isEmpty()) {
+                    drawNetworkStops(g2, map);
+                }
+
                 // Draw stops
                 drawStops(g2, map);
                 
@@ -142,6 +175,78 @@ public class MapOverlayManager {
         }
     }
     
+    /**
+     * Draw the stops in the viewport: each one when zoomed in, clusters with their
+     * size when zoomed out. Only what is visible is projected.
+     */
+    private static void drawNetworkStops(Graphics2D g, JXMapViewer map) {
+        if (stopIndex == null) return;
+
+        Rectangle2D viewport = map.getViewportBounds();
+        int zoom = map.getZoom();
+        int size = 22;
+
+        if (zoom < AppConstants.STOP_CLUSTER_MIN_ZOOM) {
+            GeoPosition nw = map.getTileFactory().pixelToGeo(
+                    new Point2D.Double(viewport.getMinX() - size, viewport.getMinY() - size), zoom);
+            GeoPosition se = map.getTileFactory().pixelToGeo(
+                    new Point2D.Double(viewport.getMaxX() + size, viewport.getMaxY() + size), zoom);
+            for (Stop stop : stopIndex.inBounds(se.getLatitude(), nw.getLongitude(),
+                    nw.getLatitude(), se.getLongitude())) {
+                Point2D worldPt = map.getTileFactory().geoToPixel(
+                        new GeoPosition(stop.getStopLat(), stop.getStopLon()), zoom);
+                drawStopIcon(g, (int) (worldPt.getX() - viewport.getX()), (int) (worldPt.getY() - viewport.getY()), size);
+            }
+            return;
+        }
+
+        if (stopClusters == null) return;
+        stopClusters.forEachInView(zoom, viewport, AppConstants.STOP_CLUSTER_CELL_PX, (wx, wy, count, stop) -> {
+            int x = (int) (wx - viewport.getX());
+            int y = (int) (wy - viewport.getY());
+            if (stop != null) {
+                drawStopIcon(g, x, y, size);
+                return;
+            }
+            Image badge = clusterBadge(count);
+            g.drawImage(badge, x - badge.getWidth(null) / 2, y - badge.getHeight(null) / 2, null);
+        });
+    }
+
+    /**
+     * Circle with the cluster size, rendered once per size: blitting is far cheaper
+     * than antialiased shapes and text for hundreds of clusters per frame.
+     */
+    private static Image clusterBadge(int count) {
+        return clusterBadges.computeIfAbsent(count, n -> {
+            int d = 18 + (int) (6 * Math.log10(n));
+            BufferedImage img = new BufferedImage(d + 2, d + 2, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(AppConstants.STOP_CLUSTER_COLOR);
+            g.fillOval(1, 1, d, d);
+            g.setColor(Color.WHITE);
+            g.setStroke(new BasicStroke(1.5f));
+            g.drawOval(1, 1, d, d);
+            g.setFont(CLUSTER_FONT);
+            FontMetrics fm = g.getFontMetrics();
+            String label = String.valueOf(n);
+            g.drawString(label, 1 + (d - fm.stringWidth(label)) / 2, 1 + (d + fm.getAscent() - fm.getDescent()) / 2);
+            g.dispose();
+            return img;
+        });
+    }
+
+    private static void drawStopIcon(Graphics2D g, int x, int y, int size) {
+        if (stopIconSmall != null) {
+            g.drawImage(stopIconSmall, x - size / 2, y - size / 2, null);
+        } else {
+            g.setColor(new Color(220, 50, 50));
+            g.fillOval(x - size / 4, y - size / 4, size / 2, size / 2);
+        }
+    }
+
     private static void drawBuses(Graphics2D g, JXMapViewer map) {
         if (busWaypoints.isEmpty()) return;
         
@@ -233,6 +338,53 @@ public class MapOverlayManager {
         return busesVisible;
     }
     
+    /**
+     * Stops of the network layer. Their clusters are built in the background;
+     * until they are ready the previous ones are drawn.
+     */
+    public static void setStopIndex(StopSpatialIndex index) {
+        synchronized (lock) {
+            stopIndex = index;
+        }
+        if (currentMap != null) {
+            currentMap.repaint();
+        }
+
+        clusterExecutor.execute(() -> {
+            TileFactoryInfo tileInfo = MapFactory.getTileFactoryInfo();
+            StopClusters clusters = new StopClusters(index.getStops(),
+                    (lat, lon, zoom) -> GeoUtil.getBitmapCoordinate(lat, lon, zoom, tileInfo),
+                    AppConstants.STOP_CLUSTER_MIN_ZOOM, tileInfo.getMaximumZoomLevel(),
+                    AppConstants.STOP_CLUSTER_CELL_PX);
+            synchronized (lock) {
+                // A newer index arrived meanwhile: its own clusters are on the way
+                if (stopIndex != index) return;
+                stopClusters = clusters;
+            }
+            if (currentMap != null) {
+                currentMap.repaint();
+            }
+        });
+    }
+
+    /**
+     * Toggle the network layer showing every stop.
+     * @return new visibility state
+     */
+    public static boolean toggleAllStopsVisible() {
+        synchronized (lock) {
+            allStopsVisible = !allStopsVisible;
+        }
+        if (currentMap != null) {
+            currentMap.repaint();
+        }
+        return allStopsVisible;
+    }
+
+    public static boolean areAllStopsVisible() {
+        return allStopsVisible;
+    }
+
     /**
      * Check if buses are currently visible.
      */
@@ -315,6 +467,20 @@ public class MapOverlayManager {
     }
 
     public static void setRoute(List<Stop> stops) {
+        setRoute(stops, null);
+    }
+
+    /**
+     * Show a route through the given stops, in the route's color if it has one.
+     */
+    public static void setRoute(List<Stop> stops, Route route) {
+        setRoute(stops, route, null, ShapeTable.NONE);
+    }
+
+    /**
+     * Show a route through the given stops, drawn along a shape of the table when known.
+     */
+    public static void setRoute(List<Stop> stops, Route route, ShapeTable shapes, int shapeIdx) {
         synchronized (lock) {
             routeStops.clear();
             currentStopIds.clear();
@@ -325,12 +491,14 @@ public class MapOverlayManager {
             }
 
             routeStops.addAll(stops);
+            routePainter.setRouteColor(route != null ? route.getColor() : null);
 
             List<GeoPosition> positions = new ArrayList<>();
             for (Stop stop : stops) {
                 positions.add(new GeoPosition(stop.getStopLat(), stop.getStopLon()));
             }
             routePainter.setRoute(positions);
+            routePainter.setShape(shapes, shapeIdx);
         }
 
         if (currentMap != null) {
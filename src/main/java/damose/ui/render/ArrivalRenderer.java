@@ -0,0 +1,74 @@
+package damose.ui.render;
+
+import java.awt.Color;
+
+import damose.config.AppConstants;
+import damose.data.model.ArrivalPrediction;
+
+/**
+ * Text and status color of arrival rows, built when a row is shown.
+ */
+public final class ArrivalRenderer {
+
+    private ArrivalRenderer() {
+        // Utility class
+    }
+
+    // -------- Next arrivals --------
+
+    /**
+     * "64 - 5 min (ritardo di 3 min)", "64 - In arrivo (statico)", ...
+     * @param nowEpoch time the minutes are counted from
+     */
+    public static String nextArrivalText(ArrivalPrediction p, long nowEpoch) {
+        long minutes = Math.max(0, (p.getExpectedEpoch() - nowEpoch) / 60);
+        String status = p.isRealtime() ? delayStatus(p.getDelaySeconds() / 60) : "statico";
+
+        if (minutes <= AppConstants.IN_ARRIVO_THRESHOLD_MIN) {
+            return p.getRouteId() + " - In arrivo (" + status + ")";
+        }
+        return p.getRouteId() + " - " + minutes + " min (" + status + ")";
+    }
+
+    /**
+     * Dot color: late, on time or early, static.
+     */
+    public static Color nextArrivalColor(ArrivalPrediction p) {
+        if (!p.isRealtime()) return AppConstants.TEXT_SECONDARY;
+        return p.getDelaySeconds() / 60 > 1 ? AppConstants.ERROR_COLOR : AppConstants.SUCCESS_COLOR;
+    }
+
+    private static String delayStatus(long delayMin) {
+        if (delayMin > 1) return "ritardo di " + delayMin + " min";
+        if (delayMin < -1) return "anticipo di " + Math.abs(delayMin) + " min";
+        return "in orario";
+    }
+
+    // -------- Trips of the day --------
+
+    /**
+     * "08:15 | 64 Termini [+3 min]", without the bracket for a static arrival.
+     */
+    public static String tripText(ArrivalPrediction p) {
+        int seconds = p.getArrivalSeconds();
+        String timeStr = String.format("%02d:%02d", seconds / 3600 % 24, seconds / 60 % 60);
+        String headsign = p.getHeadsign() != null ? p.getHeadsign() : "";
+        String text = timeStr + " | " + p.getRouteId() + " " + headsign;
+        if (!p.isRealtime()) return text;
+
+        long delayMin = p.getDelaySeconds() / 60;
+        String rtStatus;
+        if (delayMin > 1) rtStatus = "+" + delayMin + " min";
+        else if (delayMin < -1) rtStatus = "-" + Math.abs(delayMin) + " min";
+        else rtStatus = "OK";
+        return text + " [" + rtStatus + "]";
+    }
+
+    /**
+     * Text color: late, on time or early, white without realtime data.
+     */
+    public static Color tripColor(ArrivalPrediction p) {
+        if (!p.isRealtime()) return Color.WHITE;
+        return p.getDelaySeconds() / 60 > 1 ? AppConstants.ERROR_COLOR : AppConstants.SUCCESS_COLOR;
+    }
+}
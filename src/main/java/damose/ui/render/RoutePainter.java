@@ -14,13 +14,18 @@ import org.jxmapviewer.painter.Painter;
 import org.jxmapviewer.viewer.GeoPosition;
 
 import damose.config.AppConstants;
+import damose.data.model.ShapeTable;
 
 /**
  * Painter for drawing bus line routes on the map.
+ * The line follows the route's shape when one is set, at the simplification level
+ * matching the zoom, otherwise straight segments between stops.
  */
 public class RoutePainter implements Painter<JXMapViewer> {
 
     private List<GeoPosition> route;
+    private ShapeTable shapes;
+    private int shapeIdx = ShapeTable.NONE;
     private Color routeColor = AppConstants.ROUTE_COLOR;
     private Color outlineColor = AppConstants.ROUTE_OUTLINE_COLOR;
     private float lineWidth = 5.0f;
@@ -39,12 +44,46 @@ public class RoutePainter implements Painter<JXMapViewer> {
 
     public void clearRoute() {
         this.route = new ArrayList<>();
+        clearShape();
+    }
+
+    /**
+     * Draw the line along a shape of the table; the route's stops are still marked.
+     */
+    public void setShape(ShapeTable shapes, int shapeIdx) {
+        if (shapes == null || shapeIdx == ShapeTable.NONE) {
+            clearShape();
+            return;
+        }
+        this.shapes = shapes;
+        this.shapeIdx = shapeIdx;
+    }
+
+    public void clearShape() {
+        this.shapes = null;
+        this.shapeIdx = ShapeTable.NONE;
     }
 
     public void setRouteColor(Color color) {
         this.routeColor = color;
     }
 
+    /**
+     * Draw with a GTFS route_color (six hex digits) and a darker outline,
+     * or with the default colors when the route has none.
+     */
+    public void setRouteColor(String hexColor) {
+        if (hexColor == null) {
+            this.routeColor = AppConstants.ROUTE_COLOR;
+            this.outlineColor = AppConstants.ROUTE_OUTLINE_COLOR;
+            return;
+        }
+        Color color = new Color(Integer.parseInt(hexColor, 16));
+        this.routeColor = new Color(color.getRed(), color.getGreen(), color.getBlue(),
+                AppConstants.ROUTE_COLOR.getAlpha());
+        this.outlineColor = color.darker().darker();
+    }
+
     public void setLineWidth(float width) {
         this.lineWidth = width;
     }
@@ -69,15 +108,17 @@ public class RoutePainter implements Painter<JXMapViewer> {
             screenPoints.add(new Point2D.Double(screenX, screenY));
         }
 
+        List<Point2D> linePoints = shapes != null ? shapePoints(map, viewport) : screenPoints;
+
         // Draw outline
         g2.setColor(outlineColor);
         g2.setStroke(new BasicStroke(lineWidth + 3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        drawPolyline(g2, screenPoints);
+        drawPolyline(g2, linePoints);
 
         // Draw main line
         g2.setColor(routeColor);
         g2.setStroke(new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        drawPolyline(g2, screenPoints);
+        drawPolyline(g2, linePoints);
 
         // Draw circles at stops
         for (Point2D pt : screenPoints) {
@@ -95,6 +136,27 @@ public class RoutePainter implements Painter<JXMapViewer> {
         g2.dispose();
     }
 
+    /**
+     * Screen points of the shape at the coarsest level that stays within
+     * ROUTE_SHAPE_TOLERANCE_PX of the full geometry at the current zoom.
+     */
+    private List<Point2D> shapePoints(JXMapViewer map, Rectangle2D viewport) {
+        int zoom = map.getZoom();
+        double degreesPerPixel = 1.0 / map.getTileFactory().getInfo().getLongitudeDegreeWidthInPixels(zoom);
+        int level = ShapeTable.levelFor(AppConstants.ROUTE_SHAPE_TOLERANCE_PX * degreesPerPixel);
+
+        int from = shapes.levelStart(shapeIdx, level);
+        int to = shapes.levelEnd(shapeIdx, level);
+        List<Point2D> points = new ArrayList<>(to - from);
+        for (int pos = from; pos < to; pos++) {
+            int point = shapes.levelPointAt(pos);
+            GeoPosition geo = new GeoPosition(shapes.getLat(point), shapes.getLon(point));
+            Point2D worldPt = map.getTileFactory().geoToPixel(geo, zoom);
+            points.add(new Point2D.Double(worldPt.getX() - viewport.getX(), worldPt.getY() - viewport.getY()));
+        }
+        return points;
+    }
+
     private void drawPolyline(Graphics2D g, List<Point2D> points) {
         if (points.size() < 2) return;
 